@@ -0,0 +1,39 @@
+#!/usr/bin/env bash
+# Сравнение пропускной способности записи и размера индексов таблицы wallets
+# до (одна таблица с дублирующим индексом) и после (хеш-секции, fillfactor) миграций 07 и 08.
+# Обе раскладки создаются в отдельных схемах базы контейнера postgres-db, таблицы приложения не затрагиваются.
+#
+# Использование: scripts/benchmark-wallets-partitioning.sh
+#   WALLETS=10000000 CLIENTS=32 DURATION=120 scripts/benchmark-wallets-partitioning.sh
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+WALLETS=${WALLETS:-1000000}
+PARTITIONS=${PARTITIONS:-16}
+FILLFACTOR=${FILLFACTOR:-80}
+CLIENTS=${CLIENTS:-16}
+DURATION=${DURATION:-60}
+DB="-U postgres -d postgres-db"
+
+docker compose up -d postgres-db
+until docker compose exec -T postgres-db pg_isready ${DB} > /dev/null; do
+    sleep 1
+done
+docker compose cp scripts/pgbench postgres-db:/tmp/
+
+echo "=== Заполнение ${WALLETS} кошельков ==="
+docker compose exec -T postgres-db psql ${DB} -q -v ON_ERROR_STOP=1 \
+    -v wallets="${WALLETS}" -v partitions="${PARTITIONS}" -v fillfactor="${FILLFACTOR}" \
+    -f /tmp/pgbench/wallets-layouts.sql
+
+for schema in bench_plain bench_partitioned; do
+    for script in wallet-update wallet-insert; do
+        echo "=== ${schema}: ${script} ==="
+        docker compose exec -T postgres-db psql ${DB} -q -c "SELECT pg_stat_reset()" > /dev/null
+        docker compose exec -T -e PGOPTIONS="-c search_path=${schema}" postgres-db \
+            pgbench ${DB} -n -M prepared -c "${CLIENTS}" -j "${CLIENTS}" -T "${DURATION}" \
+            -D wallets="${WALLETS}" -f "/tmp/pgbench/${script}.sql" \
+            | grep -E "^(tps|latency)"
+        docker compose exec -T postgres-db psql ${DB} -v schema="${schema}" -f /tmp/pgbench/wallets-stats.sql
+    done
+done
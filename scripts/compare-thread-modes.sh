@@ -0,0 +1,30 @@
+#!/usr/bin/env bash
+# Сравнение обработки запросов в потоках платформы и в виртуальных потоках.
+# Для каждого режима сервис пересобирается и перезапускается через docker compose,
+# после чего выполняется нагрузочный тест с одинаковыми параметрами.
+#
+# Использование: scripts/compare-thread-modes.sh [параметры WalletLoadTest]
+#   scripts/compare-thread-modes.sh --concurrency 2000 --duration 60
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+URL=${URL:-http://localhost:8080}
+LOADTEST_ARGS="$*"
+
+mvn -B -q -DskipTests package
+docker compose up -d postgres-db
+
+for virtual in false true; do
+    echo "=== VIRTUAL_THREADS_ENABLED=${virtual} ==="
+    VIRTUAL_THREADS_ENABLED=${virtual} docker compose up -d --build --force-recreate test_rest_api
+
+    until curl -fs "${URL}/api/v1/wallets/550e8400-e29b-41d4-a716-446655440000" > /dev/null; do
+        sleep 1
+    done
+
+    label=$([ "${virtual}" = "true" ] && echo "virtual" || echo "platform")
+    mvn -B -q -Ploadtest test-compile exec:exec \
+        -Dloadtest.args="--url ${URL} --label ${label} ${LOADTEST_ARGS}"
+done
+
+docker compose stop test_rest_api
@@ -0,0 +1,121 @@
+-- Секционирование большой таблицы wallets без длительной блокировки записи. Выполняется вместо миграции 08,
+-- если она остановлена проверкой размера таблицы, до запуска версии приложения с этой миграцией:
+--   psql -v partitions=16 -v fillfactor=80 -v batch=10000 -f scripts/partition-wallets-online.sql
+-- partitions и fillfactor должны совпадать с spring.liquibase.parameters.wallets.* приложения.
+--
+--   1. Создается секционированная таблица wallets_partitioned; триггер переносит в нее каждое изменение wallets.
+--   2. Существующие строки копируются порциями по batch строк, каждая порция в отдельной транзакции.
+--      Строка, уже записанная триггером, не перезаписывается: в ней более новое состояние кошелька.
+--   3. Таблицы меняются местами в короткой транзакции под блокировкой. Внешние ключи wallet_operations
+--      создаются без проверки существующих строк и проверяются после транзакции, не блокируя запись.
+--
+-- Приложение не удаляет кошельки, поэтому триггер переносит только вставки и обновления.
+-- При запуске приложения миграция 08 находит секционированную таблицу и отмечается выполненной.
+-- Прежняя таблица остается под именем wallets_unpartitioned и удаляется вручную после проверки.
+-- Если шаг 3 не дождался блокировки (lock_timeout), его можно повторить отдельно.
+
+\set ON_ERROR_STOP on
+
+SELECT set_config('wallets.partitions', :'partitions', false),
+       set_config('wallets.fillfactor', :'fillfactor', false),
+       set_config('wallets.batch', :'batch', false);
+
+-- 1. Секционированная таблица и перенос изменений
+CREATE TABLE wallets_partitioned (
+    id      uuid           NOT NULL,
+    balance decimal(19, 2) NOT NULL DEFAULT 0.00,
+    version bigint         NOT NULL DEFAULT 0,
+    CONSTRAINT wallets_partitioned_pkey PRIMARY KEY (id)
+) PARTITION BY HASH (id);
+
+DO $$
+DECLARE
+    partitions int := current_setting('wallets.partitions')::int;
+BEGIN
+    FOR i IN 0..partitions - 1 LOOP
+        EXECUTE format('CREATE TABLE wallets_p%s PARTITION OF wallets_partitioned '
+                           || 'FOR VALUES WITH (MODULUS %s, REMAINDER %s) WITH (fillfactor = %s)',
+                       lpad(i::text, length((partitions - 1)::text), '0'), partitions, i,
+                       current_setting('wallets.fillfactor')::int);
+    END LOOP;
+END
+$$;
+
+CREATE FUNCTION wallets_copy_change() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO wallets_partitioned (id, balance, version)
+    VALUES (NEW.id, NEW.balance, NEW.version)
+    ON CONFLICT (id) DO UPDATE SET balance = EXCLUDED.balance, version = EXCLUDED.version;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER wallets_copy_change
+    AFTER INSERT OR UPDATE ON wallets
+    FOR EACH ROW EXECUTE FUNCTION wallets_copy_change();
+
+-- 2. Копирование существующих строк порциями в порядке id
+DO $$
+DECLARE
+    batch     int  := current_setting('wallets.batch')::int;
+    after_id  uuid := '00000000-0000-0000-0000-000000000000';
+    copied_id uuid;
+    chunks    int  := 0;
+BEGIN
+    INSERT INTO wallets_partitioned (id, balance, version)
+    SELECT id, balance, version FROM wallets WHERE id = after_id
+    ON CONFLICT (id) DO NOTHING;
+    COMMIT;
+
+    LOOP
+        BEGIN
+            WITH chunk AS (
+                SELECT id, balance, version FROM wallets WHERE id > after_id ORDER BY id LIMIT batch
+            ), copied AS (
+                INSERT INTO wallets_partitioned (id, balance, version)
+                SELECT id, balance, version FROM chunk
+                ON CONFLICT (id) DO NOTHING
+            )
+            SELECT id INTO copied_id FROM chunk ORDER BY id DESC LIMIT 1;
+        EXCEPTION WHEN deadlock_detected THEN
+            -- Порция пересеклась с переводом, изменившим кошельки в обратном порядке; порция повторяется
+            copied_id := after_id;
+        END;
+        COMMIT;
+        EXIT WHEN copied_id IS NULL;
+        IF copied_id > after_id THEN
+            chunks := chunks + 1;
+            IF chunks % 100 = 0 THEN
+                RAISE NOTICE 'Скопировано порций: %, последний id %', chunks, copied_id;
+            END IF;
+        END IF;
+        after_id := copied_id;
+    END LOOP;
+END
+$$;
+
+-- 3. Замена таблицы
+BEGIN;
+SET LOCAL lock_timeout = '5s';
+LOCK TABLE wallets, wallet_operations IN ACCESS EXCLUSIVE MODE;
+
+DROP TRIGGER wallets_copy_change ON wallets;
+DROP FUNCTION wallets_copy_change();
+
+ALTER TABLE wallet_operations DROP CONSTRAINT fk_wallet_operations_wallet;
+ALTER TABLE wallet_operations DROP CONSTRAINT fk_wallet_operations_counterparty;
+
+ALTER TABLE wallets RENAME TO wallets_unpartitioned;
+ALTER TABLE wallets_unpartitioned RENAME CONSTRAINT wallets_pkey TO wallets_unpartitioned_pkey;
+ALTER TABLE wallets_partitioned RENAME TO wallets;
+ALTER TABLE wallets RENAME CONSTRAINT wallets_partitioned_pkey TO wallets_pkey;
+
+ALTER TABLE wallet_operations ADD CONSTRAINT fk_wallet_operations_wallet
+    FOREIGN KEY (wallet_id) REFERENCES wallets (id) NOT VALID;
+ALTER TABLE wallet_operations ADD CONSTRAINT fk_wallet_operations_counterparty
+    FOREIGN KEY (counterparty_wallet_id) REFERENCES wallets (id) NOT VALID;
+COMMIT;
+
+ALTER TABLE wallet_operations VALIDATE CONSTRAINT fk_wallet_operations_wallet;
+ALTER TABLE wallet_operations VALIDATE CONSTRAINT fk_wallet_operations_counterparty;
+ANALYZE wallets;
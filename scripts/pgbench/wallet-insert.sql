@@ -0,0 +1,2 @@
+-- Создание нового кошелька: стоимость вставки определяется числом обновляемых B-деревьев
+INSERT INTO wallets (id) VALUES (gen_random_uuid());
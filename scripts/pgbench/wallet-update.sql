@@ -0,0 +1,3 @@
+-- Пополнение случайного кошелька, как в WalletRepository.applyDelta. Схема выбирается через search_path
+\set n random(1, :wallets)
+UPDATE wallets SET balance = balance + 1, version = version + 1 WHERE id = md5(CAST(:n AS text))::uuid;
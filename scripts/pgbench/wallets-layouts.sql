@@ -0,0 +1,35 @@
+-- Две раскладки таблицы wallets с одинаковыми данными (:wallets кошельков, :partitions секций):
+--   bench_plain       - исходная: одна таблица, первичный ключ и дублирующий его idx_wallets_id, fillfactor 100
+--   bench_partitioned - после миграций 07 и 08: хеш-секции по id без лишнего индекса, fillfactor :fillfactor
+-- Идентификатор кошелька с номером n равен md5(n)::uuid, поэтому скрипты pgbench выбирают кошелек случайным номером.
+DROP SCHEMA IF EXISTS bench_plain CASCADE;
+DROP SCHEMA IF EXISTS bench_partitioned CASCADE;
+CREATE SCHEMA bench_plain;
+CREATE SCHEMA bench_partitioned;
+
+CREATE TABLE bench_plain.wallets (
+    id      uuid           NOT NULL PRIMARY KEY,
+    balance decimal(19, 2) NOT NULL DEFAULT 0.00,
+    version bigint         NOT NULL DEFAULT 0
+);
+CREATE INDEX idx_wallets_id ON bench_plain.wallets (id);
+
+CREATE TABLE bench_partitioned.wallets (
+    id      uuid           NOT NULL PRIMARY KEY,
+    balance decimal(19, 2) NOT NULL DEFAULT 0.00,
+    version bigint         NOT NULL DEFAULT 0
+) PARTITION BY HASH (id);
+
+SELECT format('CREATE TABLE bench_partitioned.wallets_p%s PARTITION OF bench_partitioned.wallets '
+                  || 'FOR VALUES WITH (MODULUS %s, REMAINDER %s) WITH (fillfactor = %s)',
+              lpad(i::text, length((:partitions - 1)::text), '0'), :partitions, i, :fillfactor)
+FROM generate_series(0, :partitions - 1) AS i
+\gexec
+
+INSERT INTO bench_plain.wallets (id, balance)
+SELECT md5(n::text)::uuid, 1000.00 FROM generate_series(1, :wallets) AS n;
+INSERT INTO bench_partitioned.wallets (id, balance)
+SELECT md5(n::text)::uuid, 1000.00 FROM generate_series(1, :wallets) AS n;
+
+VACUUM ANALYZE bench_plain.wallets;
+VACUUM ANALYZE bench_partitioned.wallets;
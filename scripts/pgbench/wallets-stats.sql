@@ -0,0 +1,11 @@
+-- Размеры таблицы и индексов, доля HOT-обновлений с момента pg_stat_reset() для схемы :'schema'
+SELECT :'schema'                                                             AS layout,
+       pg_size_pretty(sum(pg_table_size(c.oid)))                             AS table_size,
+       pg_size_pretty(sum(pg_indexes_size(c.oid)))                           AS index_size,
+       sum(s.n_tup_upd)                                                      AS updates,
+       round(100.0 * sum(s.n_tup_hot_upd) / nullif(sum(s.n_tup_upd), 0), 1) AS hot_percent
+FROM pg_class c
+JOIN pg_namespace n ON n.oid = c.relnamespace
+JOIN pg_stat_user_tables s ON s.relid = c.oid
+WHERE n.nspname = :'schema'
+  AND c.relkind = 'r';
@@ -0,0 +1,58 @@
+package org.yakov.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.yakov.TestRestApiApplication;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Контекст приложения для бенчмарков: встроенная H2 в режиме совместимости с PostgreSQL,
+ * схема создается Hibernate, поэтому бенчмарки не требуют внешней БД и сети.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * @param extraArgs дополнительные свойства в формате --name=value
+     */
+    static ConfigurableApplicationContext start(String... extraArgs) {
+        String[] args = Stream.concat(Stream.of(
+                "--spring.datasource.url=jdbc:h2:mem:wallets;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.liquibase.enabled=false",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"), Stream.of(extraArgs)).toArray(String[]::new);
+        return new SpringApplicationBuilder(TestRestApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    /**
+     * Создает кошельки с балансом, достаточным для любого числа итераций снятия
+     */
+    static UUID[] createWallets(ConfigurableApplicationContext context, int count) {
+        List<Wallet> wallets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Wallet wallet = new Wallet();
+            wallet.setId(UUID.randomUUID());
+            wallet.setBalance(new BigDecimal("1000000000.00"));
+            wallets.add(wallet);
+        }
+        return context.getBean(WalletRepository.class).saveAll(wallets).stream()
+                .map(Wallet::getId)
+                .toArray(UUID[]::new);
+    }
+}
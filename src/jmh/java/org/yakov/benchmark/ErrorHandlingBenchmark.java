@@ -0,0 +1,74 @@
+package org.yakov.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.yakov.exception.GlobalExceptionHandler;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletOperations;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь ошибки от создания исключения в сервисе до сериализованного тела ответа {@link GlobalExceptionHandler}
+ * в сравнении с сериализацией кошелька в успешном ответе
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorHandlingBenchmark {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+    private final UUID walletId = UUID.randomUUID();
+    private final BigDecimal amount = new BigDecimal("100.00");
+    private ObjectMapper objectMapper;
+    private WebRequest request;
+
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        request = new ServletWebRequest(new MockHttpServletRequest("POST", "/api/v1/wallets"));
+        wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(amount);
+        wallet.setVersion(42L);
+    }
+
+    @Benchmark
+    public byte[] success() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(wallet);
+    }
+
+    @Benchmark
+    public byte[] walletNotFound() {
+        return handler.handleWalletNotFoundException(WalletOperations.walletNotFound(walletId), request).getBody();
+    }
+
+    @Benchmark
+    public byte[] insufficientFunds() {
+        return handler.handleInsufficientFundsException(WalletOperations.insufficientFunds(amount), request).getBody();
+    }
+
+    @Benchmark
+    public byte[] concurrentModification() {
+        return handler.handleConcurrentModificationException(WalletOperations.concurrentModification(), request).getBody();
+    }
+
+    @Benchmark
+    public byte[] validationError() {
+        return handler.handleRequestValidationException(
+                new RequestValidationException("Ключ идемпотентности не может быть длиннее 64 символов"), request).getBody();
+    }
+}
@@ -0,0 +1,61 @@
+package org.yakov.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletOperations;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Изменение баланса операцией: прежняя арифметика над {@link BigDecimal} и текущая над минимальными единицами.
+ * Сумма операции приходит из JSON как BigDecimal в обоих случаях; сравнивается объем памяти,
+ * выделяемой на операцию (столбец alloc, B/op в сводке {@link WalletBenchmarks}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private final BigDecimal amount = new BigDecimal("12.34");
+    private BigDecimal decimalBalance;
+    private Wallet wallet;
+    private boolean withdraw;
+
+    @Setup
+    public void setUp() {
+        decimalBalance = new BigDecimal("100000.00");
+        wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setBalance(decimalBalance);
+    }
+
+    /**
+     * Арифметика до перехода на минимальные единицы
+     */
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        withdraw = !withdraw;
+        if (withdraw) {
+            if (decimalBalance.compareTo(amount) < 0) {
+                throw new IllegalStateException();
+            }
+            decimalBalance = decimalBalance.subtract(amount);
+        } else {
+            decimalBalance = decimalBalance.add(amount);
+        }
+        return decimalBalance;
+    }
+
+    @Benchmark
+    public long minorUnits() {
+        withdraw = !withdraw;
+        WalletOperations.apply(wallet, withdraw ? OperationType.WITHDRAW : OperationType.DEPOSIT, amount);
+        return wallet.getBalanceMinor();
+    }
+}
@@ -0,0 +1,66 @@
+package org.yakov.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запуск бенчмарков с профилировщиком выделения памяти и сводкой по каждому бенчмарку:
+ * операций в секунду, 99-й перцентиль задержки и объем памяти, выделяемой на операцию.
+ * Аргументы командной строки передаются JMH без изменений.
+ */
+public final class WalletBenchmarks {
+
+    private WalletBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        printSummary(results);
+    }
+
+    private static void printSummary(Collection<RunResult> results) {
+        Map<String, double[]> rows = new TreeMap<>();
+        for (RunResult result : results) {
+            String label = result.getParams().getBenchmark().replace("org.yakov.benchmark.", "")
+                    + paramsLabel(result);
+            double[] row = rows.computeIfAbsent(label, key -> new double[]{Double.NaN, Double.NaN, Double.NaN});
+            TimeUnit unit = result.getParams().getTimeUnit();
+            Result<?> primary = result.getPrimaryResult();
+            if (result.getParams().getMode() == Mode.Throughput) {
+                row[0] = primary.getScore() * TimeUnit.SECONDS.toNanos(1) / unit.toNanos(1);
+            } else if (result.getParams().getMode() == Mode.SampleTime) {
+                row[1] = primary.getStatistics().getPercentile(99) * unit.toNanos(1) / TimeUnit.MICROSECONDS.toNanos(1);
+            }
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (allocation != null) {
+                row[2] = allocation.getScore();
+            }
+        }
+
+        System.out.printf("%n%-70s %15s %15s %15s%n", "Benchmark", "ops/s", "p99, us", "alloc, B/op");
+        rows.forEach((label, row) -> System.out.printf("%-70s %15.0f %15.2f %15.0f%n", label, row[0], row[1], row[2]));
+    }
+
+    private static String paramsLabel(RunResult result) {
+        StringBuilder label = new StringBuilder();
+        for (String key : result.getParams().getParamsKeys()) {
+            label.append(label.length() == 0 ? " (" : ", ").append(key).append('=').append(result.getParams().getParam(key));
+        }
+        return label.length() == 0 ? "" : label.append(')').toString();
+    }
+}
@@ -0,0 +1,81 @@
+package org.yakov.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.yakov.codec.WalletBinaryCodec;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор и проверка операции, сериализация кошелька: JSON с валидатором против двоичного формата.
+ * Размеры сообщений в обоих форматах выводятся при подготовке бенчмарка
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletCodecBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Validator validator;
+    private byte[] operationJson;
+    private byte[] operationBinary;
+    private int operationBinaryLength;
+    private Wallet wallet;
+    private byte[] walletBuffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        WalletOperationDTO operation = new WalletOperationDTO(UUID.randomUUID(), OperationType.DEPOSIT,
+                new BigDecimal("1000.00"), UUID.randomUUID().toString(), null);
+        operationJson = objectMapper.writeValueAsBytes(operation);
+        operationBinary = new byte[WalletBinaryCodec.OPERATION_MAX_LENGTH];
+        operationBinaryLength = WalletBinaryCodec.encodeOperation(operation, operationBinary);
+
+        wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setBalance(new BigDecimal("123456.78"));
+        wallet.setVersion(42L);
+        walletBuffer = new byte[WalletBinaryCodec.WALLET_LENGTH];
+
+        System.out.printf("%nОперация: JSON %d байт, двоичный формат %d байт%n", operationJson.length, operationBinaryLength);
+        System.out.printf("Кошелек: JSON %d байт, двоичный формат %d байт%n",
+                objectMapper.writeValueAsBytes(wallet).length, WalletBinaryCodec.WALLET_LENGTH);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<WalletOperationDTO>> readOperationJson() throws IOException {
+        return validator.validate(objectMapper.readValue(operationJson, WalletOperationDTO.class));
+    }
+
+    @Benchmark
+    public WalletOperationDTO readOperationBinary() {
+        return WalletBinaryCodec.decodeOperation(operationBinary, operationBinaryLength);
+    }
+
+    @Benchmark
+    public byte[] writeWalletJson() throws IOException {
+        return objectMapper.writeValueAsBytes(wallet);
+    }
+
+    @Benchmark
+    public byte[] writeWalletBinary() {
+        WalletBinaryCodec.encodeWallet(wallet, walletBuffer);
+        return walletBuffer;
+    }
+}
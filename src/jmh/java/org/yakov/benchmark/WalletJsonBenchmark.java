@@ -0,0 +1,50 @@
+package org.yakov.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.Wallet;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор тела запроса операции и сериализация ответа с кошельком
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private byte[] operationJson;
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        operationJson = ("{\"walletId\":\"" + UUID.randomUUID() + "\",\"operationType\":\"DEPOSIT\",\"amount\":1000.00}")
+                .getBytes(StandardCharsets.UTF_8);
+        wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setBalance(new BigDecimal("123456.78"));
+        wallet.setVersion(42L);
+    }
+
+    @Benchmark
+    public WalletOperationDTO readOperation() throws IOException {
+        return objectMapper.readValue(operationJson, WalletOperationDTO.class);
+    }
+
+    @Benchmark
+    public byte[] writeWallet() throws IOException {
+        return objectMapper.writeValueAsBytes(wallet);
+    }
+}
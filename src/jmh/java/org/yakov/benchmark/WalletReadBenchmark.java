@@ -0,0 +1,48 @@
+package org.yakov.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletService;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WalletService#get} с кэшем балансов и без него
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class WalletReadBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID[] walletIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--wallet.cache.enabled=" + cacheEnabled,
+                "--wallet.cache.expire-after-write=1h");
+        walletService = context.getBean(WalletService.class);
+        walletIds = BenchmarkContext.createWallets(context, 4096);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Wallet get() {
+        return walletService.get(walletIds[ThreadLocalRandom.current().nextInt(walletIds.length)]);
+    }
+}
@@ -0,0 +1,78 @@
+package org.yakov.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.ConcurrentModificationException;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletService;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WalletService#processOperation} при конкуренции за один кошелек и при нагрузке, распределенной по многим кошелькам.
+ * Конфликты оптимистической блокировки не повторяются и учитываются отдельным счетчиком conflicts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class WalletServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    /**
+     * Режим atomic не включен: H2 не поддерживает UPDATE ... RETURNING
+     */
+    @Param({"jpa", "combining"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID[] walletIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--wallet.execution.mode=" + mode);
+        walletService = context.getBean(WalletService.class);
+        walletIds = BenchmarkContext.createWallets(context, 4096);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+        public long conflicts;
+    }
+
+    @Benchmark
+    public Wallet singleWallet(Conflicts counters) {
+        return process(walletIds[0], counters);
+    }
+
+    @Benchmark
+    public Wallet manyWallets(Conflicts counters) {
+        return process(walletIds[ThreadLocalRandom.current().nextInt(walletIds.length)], counters);
+    }
+
+    private Wallet process(UUID walletId, Conflicts counters) {
+        OperationType type = ThreadLocalRandom.current().nextBoolean() ? OperationType.DEPOSIT : OperationType.WITHDRAW;
+        try {
+            return walletService.processOperation(new WalletOperationDTO(walletId, type, AMOUNT));
+        } catch (ConcurrentModificationException e) {
+            counters.conflicts++;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.yakov.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Результаты замера: гистограммы задержек по видам запросов и количество ответов по статусу и коду ошибки.
+ * Задержки хранятся в микросекундах с точностью 3 значащих цифры.
+ */
+final class LoadResults {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+    private final Histogram total = histogram();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param errorCode код ошибки из тела ответа или null
+     */
+    void record(String kind, long latencyNanos, int status, String errorCode) {
+        recordLatency(kind, latencyNanos);
+        if (status < 300) {
+            succeeded.increment();
+        }
+        outcome(errorCode == null ? String.valueOf(status) : status + " " + errorCode);
+    }
+
+    void recordFailure(String kind, long latencyNanos, Throwable error) {
+        recordLatency(kind, latencyNanos);
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        outcome("ошибка клиента " + cause.getClass().getSimpleName());
+    }
+
+    /**
+     * Запрос не отправлен: число запросов без ответа достигло предела
+     */
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    long p99Micros() {
+        return total.getValueAtPercentile(99);
+    }
+
+    double errorRate() {
+        long count = completed.sum() + dropped.sum();
+        return count == 0 ? 0 : 1 - (double) succeeded.sum() / count;
+    }
+
+    void report(String label, long elapsedNanos, PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%s: ответов %d, %.0f ответов/с, успешных %.0f/с, не отправлено %d%n", label,
+                completed.sum(), completed.sum() / seconds, succeeded.sum() / seconds, dropped.sum());
+        print(out, label, "все", total);
+        new TreeMap<>(latencies).forEach((kind, histogram) -> print(out, label, kind, histogram));
+        Map<String, Long> byOutcome = new TreeMap<>();
+        outcomes.forEach((outcome, count) -> byOutcome.put(outcome, count.sum()));
+        out.printf("%s: результаты %s%n", label, byOutcome);
+    }
+
+    /**
+     * Сохраняет распределение задержек всех запросов в формате HdrHistogram (значения в миллисекундах)
+     */
+    void writeDistribution(String file) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+            total.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private void recordLatency(String kind, long latencyNanos) {
+        long micros = Math.min(Math.max(1, latencyNanos / 1000), MAX_LATENCY_MICROS);
+        total.recordValue(micros);
+        latencies.computeIfAbsent(kind, k -> histogram()).recordValue(micros);
+        completed.increment();
+    }
+
+    private void outcome(String outcome) {
+        outcomes.computeIfAbsent(outcome, o -> new LongAdder()).increment();
+    }
+
+    private static void print(PrintStream out, String label, String kind, Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return;
+        }
+        out.printf("%s: %-8s p50 %.1f мс, p90 %.1f мс, p99 %.1f мс, p99.9 %.1f мс, p99.99 %.1f мс, max %.1f мс%n",
+                label, kind,
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getValueAtPercentile(99.99) / 1e3, histogram.getMaxValue() / 1e3);
+    }
+
+    private static Histogram histogram() {
+        return new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    }
+}
@@ -0,0 +1,363 @@
+package org.yakov.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.yakov.TestRestApiApplication;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест сервиса, запущенного через docker-compose.yaml, или встроенного экземпляра (--embedded true).
+ *
+ * <p>Без --rate используется закрытая модель: заданное число клиентов, каждый из которых отправляет следующий запрос
+ * сразу после получения ответа на предыдущий. С --rate используется открытая модель: запросы отправляются
+ * с заданной интенсивностью независимо от ответов, а задержка отсчитывается от запланированного момента отправки,
+ * поэтому замедление сервиса не снижает нагрузку и не скрывается из перцентилей.
+ *
+ * <p>Смесь запросов - чтение кошелька, пополнение и снятие; кошелек выбирается по распределению Ципфа.
+ * Ответы с ошибкой учитываются по статусу и коду ошибки из тела ответа.
+ *
+ * <pre>
+ * --url              адрес сервиса (http://localhost:8080)
+ * --embedded         запустить сервис в этом же процессе на свободном порту (false); параметры с точкой в имени,
+ *                    например --spring.datasource.hikari.maximum-pool-size 50, передаются встроенному сервису
+ * --rate             интенсивность запросов в секунду для открытой модели (0 - закрытая модель)
+ * --arrivals         распределение интервалов открытой модели: poisson или uniform (poisson)
+ * --max-in-flight    предел запросов без ответа в открытой модели; сверх него запросы не отправляются (10000)
+ * --concurrency      число клиентов закрытой модели (1000)
+ * --duration         длительность замера в секундах (30)
+ * --warmup           длительность прогрева в секундах (5)
+ * --read-ratio       доля запросов чтения (0.8)
+ * --withdraw-ratio   доля снятий среди изменяющих запросов (0)
+ * --amount           сумма операции (0.01)
+ * --zipf             показатель распределения Ципфа по кошелькам; 0 - равномерное (0)
+ * --wallets          идентификаторы кошельков через запятую (кошельки из начальных данных)
+ * --seed-wallets     создать указанное число кошельков теста вместо --wallets
+ * --initial-balance  баланс создаваемых кошельков (1000000)
+ * --db-url           адрес БД для создания кошельков без --embedded (jdbc:postgresql://localhost:5432/postgres-db)
+ * --db-user          пользователь БД (postgres)
+ * --db-password      пароль БД (postgres)
+ * --hdr-out          файл для распределения задержек в формате HdrHistogram
+ * --max-p99-ms       завершиться с кодом 1, если p99 всех запросов больше значения
+ * --max-error-rate   завершиться с кодом 1, если доля неуспешных запросов больше значения
+ * --label            подпись результата
+ * </pre>
+ */
+public final class WalletLoadTest {
+
+    private static final String DEFAULT_WALLETS =
+            "550e8400-e29b-41d4-a716-446655440000,550e8400-e29b-41d4-a716-446655440001";
+
+    private static final String SEED_WALLET =
+            "INSERT INTO wallets (id, balance, version) VALUES (?, ?, 0) ON CONFLICT (id) DO NOTHING";
+
+    private static final String ERROR_CODE_FIELD = "\"errorCode\":\"";
+
+    private final Map<String, String> args;
+    private final int rate;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final int concurrency;
+    private final Duration duration;
+    private final Duration warmup;
+    private final double readRatio;
+    private final double withdrawRatio;
+    private final String amount;
+    private final double zipfExponent;
+    private final HttpClient client;
+    private final LoadResults results = new LoadResults();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private String baseUrl;
+    private String label;
+    private List<UUID> walletIds;
+    private ZipfDistribution wallets;
+    private volatile long recordFrom;
+    private volatile long recordUntil = Long.MAX_VALUE;
+    private volatile boolean running = true;
+
+    private WalletLoadTest(Map<String, String> args) {
+        this.args = args;
+        this.rate = Integer.parseInt(args.getOrDefault("rate", "0"));
+        this.poisson = !"uniform".equals(args.getOrDefault("arrivals", "poisson"));
+        this.maxInFlight = Integer.parseInt(args.getOrDefault("max-in-flight", "10000"));
+        this.concurrency = Integer.parseInt(args.getOrDefault("concurrency", "1000"));
+        this.duration = Duration.ofSeconds(Long.parseLong(args.getOrDefault("duration", "30")));
+        this.warmup = Duration.ofSeconds(Long.parseLong(args.getOrDefault("warmup", "5")));
+        this.readRatio = Double.parseDouble(args.getOrDefault("read-ratio", "0.8"));
+        this.withdrawRatio = Double.parseDouble(args.getOrDefault("withdraw-ratio", "0"));
+        this.amount = args.getOrDefault("amount", "0.01");
+        this.zipfExponent = Double.parseDouble(args.getOrDefault("zipf", "0"));
+        // Сервис не поддерживает h2c: без явной версии клиент добавляет к каждому запросу заголовки перехода на HTTP/2
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new WalletLoadTest(parseArgs(args)).run() ? 0 : 1);
+    }
+
+    /**
+     * @return false, если результат превышает заданные пределы
+     */
+    private boolean run() throws Exception {
+        ConfigurableApplicationContext context = Boolean.parseBoolean(args.getOrDefault("embedded", "false"))
+                ? startEmbedded()
+                : null;
+        try {
+            if (context == null) {
+                baseUrl = args.getOrDefault("url", "http://localhost:8080");
+            }
+            label = args.getOrDefault("label", baseUrl);
+            walletIds = args.containsKey("seed-wallets") ? seedWallets(context) : parseWallets();
+            wallets = new ZipfDistribution(walletIds.size(), zipfExponent);
+
+            System.out.printf("%s: %s, прогрев %d с, замер %d с, чтение %.0f%%, снятие %.0f%% изменений%n",
+                    label, rate > 0 ? rate + " запросов/с (" + (poisson ? "poisson" : "uniform") + ")" : concurrency + " клиентов",
+                    warmup.toSeconds(), duration.toSeconds(), readRatio * 100, withdrawRatio * 100);
+            System.out.printf("%s: кошельков %d, zipf %.2f, на 1%% кошельков приходится %.0f%% запросов%n",
+                    label, walletIds.size(), zipfExponent, wallets.share(Math.max(1, walletIds.size() / 100)) * 100);
+
+            long elapsed = rate > 0 ? runOpen() : runClosed();
+            results.report(label, elapsed, System.out);
+            if (args.containsKey("hdr-out")) {
+                results.writeDistribution(args.get("hdr-out"));
+            }
+            return withinLimits();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Открытая модель: один поток отправляет запросы в запланированные моменты
+     */
+    private long runOpen() throws InterruptedException {
+        double intervalNanos = 1e9 / rate;
+        long started = System.nanoTime();
+        recordFrom = started + warmup.toNanos();
+        recordUntil = recordFrom + duration.toNanos();
+        double intended = started;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (intended < recordUntil) {
+            intended += poisson ? -Math.log(1 - random.nextDouble()) * intervalNanos : intervalNanos;
+            long delay = (long) intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            if (inFlight.get() >= maxInFlight) {
+                if (intended >= recordFrom && intended < recordUntil) {
+                    results.recordDropped();
+                }
+                continue;
+            }
+            inFlight.incrementAndGet();
+            send((long) intended).whenComplete((ignored, error) -> inFlight.decrementAndGet());
+        }
+        awaitInFlight();
+        return recordUntil - recordFrom;
+    }
+
+    /**
+     * Закрытая модель: каждый клиент отправляет следующий запрос после ответа на предыдущий
+     */
+    private long runClosed() throws InterruptedException {
+        List<CompletableFuture<Void>> clients = new ArrayList<>(concurrency);
+        recordFrom = Long.MAX_VALUE;
+        for (int i = 0; i < concurrency; i++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            next(done);
+            clients.add(done);
+        }
+
+        Thread.sleep(warmup.toMillis());
+        long started = System.nanoTime();
+        recordFrom = started;
+        Thread.sleep(duration.toMillis());
+        recordUntil = System.nanoTime();
+        running = false;
+        CompletableFuture.allOf(clients.toArray(CompletableFuture[]::new)).join();
+        return recordUntil - started;
+    }
+
+    private void next(CompletableFuture<Void> done) {
+        if (!running) {
+            done.complete(null);
+            return;
+        }
+        send(System.nanoTime()).whenCompleteAsync((ignored, error) -> next(done));
+    }
+
+    /**
+     * Отправляет случайный запрос смеси; задержка отсчитывается от момента intended
+     */
+    private CompletableFuture<?> send(long intended) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID walletId = walletIds.get(wallets.sample(random));
+        String kind;
+        HttpRequest request;
+        if (random.nextDouble() < readRatio) {
+            kind = "read";
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/wallets/" + walletId))
+                    .timeout(Duration.ofSeconds(60))
+                    .GET()
+                    .build();
+        } else {
+            kind = random.nextDouble() < withdrawRatio ? "withdraw" : "deposit";
+            String body = "{\"walletId\":\"" + walletId + "\",\"operationType\":\"" + kind.toUpperCase()
+                    + "\",\"amount\":" + amount + "}";
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/wallets"))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+        return client.sendAsync(request, WalletLoadTest::errorBody)
+                .whenComplete((response, error) -> {
+                    if (intended < recordFrom || intended >= recordUntil) {
+                        return;
+                    }
+                    long latency = System.nanoTime() - intended;
+                    if (error != null) {
+                        results.recordFailure(kind, latency, error);
+                    } else {
+                        results.record(kind, latency, response.statusCode(), errorCode(response.body()));
+                    }
+                });
+    }
+
+    /**
+     * Тело читается только у ответов с ошибкой, чтобы получить код ошибки
+     */
+    private static HttpResponse.BodySubscriber<String> errorBody(HttpResponse.ResponseInfo info) {
+        return info.statusCode() < 300
+                ? HttpResponse.BodySubscribers.replacing(null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+    }
+
+    private static String errorCode(String body) {
+        if (body == null) {
+            return null;
+        }
+        int start = body.indexOf(ERROR_CODE_FIELD);
+        if (start < 0) {
+            return null;
+        }
+        start += ERROR_CODE_FIELD.length();
+        int end = body.indexOf('"', start);
+        return end < 0 ? null : body.substring(start, end);
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private boolean withinLimits() {
+        boolean passed = true;
+        if (args.containsKey("max-p99-ms") && results.p99Micros() > Double.parseDouble(args.get("max-p99-ms")) * 1000) {
+            System.out.printf("%s: p99 %.1f мс больше допустимого %s мс%n", label, results.p99Micros() / 1e3, args.get("max-p99-ms"));
+            passed = false;
+        }
+        if (args.containsKey("max-error-rate") && results.errorRate() > Double.parseDouble(args.get("max-error-rate"))) {
+            System.out.printf("%s: доля ошибок %.4f больше допустимой %s%n", label, results.errorRate(), args.get("max-error-rate"));
+            passed = false;
+        }
+        return passed;
+    }
+
+    /**
+     * Запускает сервис на свободном порту; параметры с точкой в имени передаются сервису как свойства
+     */
+    private ConfigurableApplicationContext startEmbedded() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        args.forEach((name, value) -> {
+            if (name.contains(".")) {
+                properties.put(name, value);
+            }
+        });
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TestRestApiApplication.class)
+                .properties(properties)
+                .run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        return context;
+    }
+
+    private List<UUID> parseWallets() {
+        return Arrays.stream(args.getOrDefault("wallets", DEFAULT_WALLETS).split(","))
+                .map(String::trim)
+                .map(UUID::fromString)
+                .toList();
+    }
+
+    /**
+     * Создает кошельки теста с постоянными идентификаторами, поэтому повторный запуск использует те же кошельки.
+     * В режиме memory кошельки нужно создать до запуска сервиса
+     */
+    private List<UUID> seedWallets(ConfigurableApplicationContext context) throws SQLException {
+        int count = Integer.parseInt(args.get("seed-wallets"));
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.nameUUIDFromBytes(("loadtest-wallet-" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        try (Connection connection = context != null
+                ? context.getBean(DataSource.class).getConnection()
+                : DriverManager.getConnection(
+                        args.getOrDefault("db-url", "jdbc:postgresql://localhost:5432/postgres-db"),
+                        args.getOrDefault("db-user", "postgres"),
+                        args.getOrDefault("db-password", "postgres"));
+             PreparedStatement statement = connection.prepareStatement(SEED_WALLET)) {
+            BigDecimal balance = new BigDecimal(args.getOrDefault("initial-balance", "1000000"));
+            for (int i = 0; i < count; i++) {
+                statement.setObject(1, ids.get(i));
+                statement.setBigDecimal(2, balance);
+                statement.addBatch();
+                if (i % 1000 == 999) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+        return ids;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Ожидался параметр вида --name value: " + args[i]);
+            }
+            result.put(args[i].substring(2), args[i + 1]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+package org.yakov.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Распределение Ципфа на номерах 0..n-1: вероятность номера k пропорциональна 1 / (k + 1)^exponent.
+ * При exponent = 0 распределение равномерное; при exponent около 1 несколько первых номеров
+ * получают большую часть выборок, что соответствует нескольким популярным кошелькам.
+ */
+final class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    ZipfDistribution(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Количество элементов должно быть положительным");
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("Показатель распределения не может быть отрицательным");
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int sample(ThreadLocalRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index + 1 : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+
+    /**
+     * Доля выборок, приходящаяся на первые count номеров
+     */
+    double share(int count) {
+        return cumulative[Math.min(count, cumulative.length) - 1];
+    }
+}
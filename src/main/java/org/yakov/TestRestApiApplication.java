@@ -2,10 +2,12 @@ package org.yakov;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class TestRestApiApplication {
     public static void main(String[] args) {
         SpringApplication.run(TestRestApiApplication.class, args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+package org.yakov.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.CacheStatsDTO;
+import org.yakov.model.Wallet;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Ограниченный кэш балансов для чтения кошельков.
+ * Каждая запись помечена версией кошелька: запись заменяется только более новой версией,
+ * поэтому чтение, начавшееся до фиксации изменения, не может вытеснить результат этого изменения.
+ */
+@Component
+public class WalletCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final Cache<UUID, CachedWallet> cache;
+
+    public WalletCache(WalletProperties properties) {
+        WalletProperties.Cache cacheProperties = properties.getCache();
+        this.enabled = cacheProperties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfterWrite(cacheProperties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "wallet.balances");
+    }
+
+    public Optional<Wallet> find(UUID walletId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CachedWallet cached = cache.getIfPresent(walletId);
+        return cached == null ? Optional.empty() : Optional.of(cached.toWallet());
+    }
+
+    public void put(Wallet wallet) {
+        if (!enabled || wallet.getVersion() == null) {
+            return;
+        }
+        CachedWallet cached = new CachedWallet(wallet.getId(), wallet.getBalance(), wallet.getVersion());
+        cache.asMap().merge(wallet.getId(), cached,
+                (current, candidate) -> candidate.version() >= current.version() ? candidate : current);
+    }
+
+    /**
+     * Обновляет кэш после фиксации текущей транзакции. Состояние кошелька считывается в момент фиксации,
+     * когда версия уже увеличена при сбросе контекста. Вне транзакции кэш обновляется сразу.
+     */
+    public void putAfterCommit(Wallet wallet) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(wallet);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(wallet);
+            }
+        });
+    }
+
+    public CacheStatsDTO stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDTO(enabled, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+
+    private record CachedWallet(UUID id, BigDecimal balance, long version) {
+        Wallet toWallet() {
+            Wallet wallet = new Wallet();
+            wallet.setId(id);
+            wallet.setBalance(balance);
+            wallet.setVersion(version);
+            return wallet;
+        }
+    }
+}
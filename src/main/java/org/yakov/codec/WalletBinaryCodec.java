@@ -0,0 +1,201 @@
+package org.yakov.codec;
+
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.MalformedRequestException;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.model.MinorUnits;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Двоичный формат операции и кошелька для внутренних клиентов с высокой частотой запросов.
+ * Поля фиксированной длины, порядок байтов big-endian, суммы передаются в минимальных единицах.
+ *
+ * <pre>
+ * Операция:
+ *   1   версия формата (1)
+ *   1   флаги: 0x01 - указан кошелек получателя, 0x02 - указан ключ идемпотентности
+ *   1   тип операции: 1 - DEPOSIT, 2 - WITHDRAW, 3 - TRANSFER
+ *   16  ID кошелька
+ *   8   сумма в минимальных единицах
+ *   16  ID кошелька получателя (если указан)
+ *   1+N длина и ключ идемпотентности в UTF-8 (если указан)
+ *
+ * Кошелек:
+ *   1   версия формата (1)
+ *   16  ID кошелька
+ *   8   баланс в минимальных единицах
+ *   8   версия кошелька
+ * </pre>
+ */
+public final class WalletBinaryCodec {
+
+    public static final String MEDIA_TYPE = "application/x-wallet-binary";
+
+    public static final byte FORMAT_VERSION = 1;
+
+    public static final int OPERATION_MAX_LENGTH = 3 + 16 + 8 + 16 + 1 + 255;
+
+    public static final int WALLET_LENGTH = 1 + 16 + 8 + 8;
+
+    private static final int FLAG_TARGET = 0x01;
+    private static final int FLAG_IDEMPOTENCY_KEY = 0x02;
+
+    private static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private WalletBinaryCodec() {
+    }
+
+    /**
+     * Разбирает операцию и проверяет ее по тем же правилам, что и аннотации {@link WalletOperationDTO}
+     *
+     * @throws MalformedRequestException  если данные не соответствуют формату
+     * @throws RequestValidationException если операция не проходит проверку
+     */
+    public static WalletOperationDTO decodeOperation(byte[] buffer, int length) {
+        if (length < 3 + 16 + 8) {
+            throw new MalformedRequestException("длина операции " + length + " байт меньше минимальной");
+        }
+        if (buffer[0] != FORMAT_VERSION) {
+            throw new MalformedRequestException("неподдерживаемая версия формата " + buffer[0]);
+        }
+        int flags = buffer[1];
+        if ((flags & ~(FLAG_TARGET | FLAG_IDEMPOTENCY_KEY)) != 0) {
+            throw new MalformedRequestException("неизвестные флаги " + flags);
+        }
+
+        WalletOperationDTO dto = new WalletOperationDTO();
+        dto.setOperationType(operationType(buffer[2]));
+        dto.setWalletId(readUuid(buffer, 3));
+        long amount = (long) LONG.get(buffer, 19);
+        int offset = 27;
+        if ((flags & FLAG_TARGET) != 0) {
+            checkLength(length, offset + 16);
+            dto.setTargetWalletId(readUuid(buffer, offset));
+            offset += 16;
+        }
+        if ((flags & FLAG_IDEMPOTENCY_KEY) != 0) {
+            checkLength(length, offset + 1);
+            int keyLength = buffer[offset++] & 0xFF;
+            checkLength(length, offset + keyLength);
+            dto.setIdempotencyKey(new String(buffer, offset, keyLength, StandardCharsets.UTF_8));
+            offset += keyLength;
+        }
+        if (offset != length) {
+            throw new MalformedRequestException("лишние " + (length - offset) + " байт после операции");
+        }
+
+        validate(dto, amount);
+        dto.setAmount(MinorUnits.toDecimal(amount));
+        return dto;
+    }
+
+    /**
+     * Кодирует операцию в буфер длиной не менее {@link #OPERATION_MAX_LENGTH}
+     *
+     * @return число записанных байт
+     */
+    public static int encodeOperation(WalletOperationDTO dto, byte[] buffer) {
+        byte[] key = dto.getIdempotencyKey() == null ? null : dto.getIdempotencyKey().getBytes(StandardCharsets.UTF_8);
+        if (key != null && key.length > 255) {
+            throw new IllegalArgumentException("Ключ идемпотентности длиннее 255 байт");
+        }
+        buffer[0] = FORMAT_VERSION;
+        buffer[1] = (byte) ((dto.getTargetWalletId() != null ? FLAG_TARGET : 0) | (key != null ? FLAG_IDEMPOTENCY_KEY : 0));
+        buffer[2] = operationTypeCode(dto.getOperationType());
+        writeUuid(buffer, 3, dto.getWalletId());
+        LONG.set(buffer, 19, MinorUnits.of(dto.getAmount()));
+        int offset = 27;
+        if (dto.getTargetWalletId() != null) {
+            writeUuid(buffer, offset, dto.getTargetWalletId());
+            offset += 16;
+        }
+        if (key != null) {
+            buffer[offset++] = (byte) key.length;
+            System.arraycopy(key, 0, buffer, offset, key.length);
+            offset += key.length;
+        }
+        return offset;
+    }
+
+    /**
+     * Кодирует кошелек в буфер длиной не менее {@link #WALLET_LENGTH}
+     */
+    public static void encodeWallet(Wallet wallet, byte[] buffer) {
+        buffer[0] = FORMAT_VERSION;
+        writeUuid(buffer, 1, wallet.getId());
+        LONG.set(buffer, 17, wallet.getBalanceMinor());
+        LONG.set(buffer, 25, wallet.getVersion() == null ? 0L : wallet.getVersion());
+    }
+
+    /**
+     * @throws MalformedRequestException если данные не соответствуют формату
+     */
+    public static Wallet decodeWallet(byte[] buffer, int length) {
+        if (length != WALLET_LENGTH || buffer[0] != FORMAT_VERSION) {
+            throw new MalformedRequestException("некорректная запись кошелька");
+        }
+        Wallet wallet = new Wallet();
+        wallet.setId(readUuid(buffer, 1));
+        wallet.setBalanceMinor((long) LONG.get(buffer, 17));
+        wallet.setVersion((long) LONG.get(buffer, 25));
+        return wallet;
+    }
+
+    /**
+     * Проверки аннотаций {@link WalletOperationDTO} без валидатора. Поля, которые формат не позволяет опустить,
+     * не проверяются; ограничение {@code @Digits(integer = 17, fraction = 2)} выполняется для любой суммы в long
+     */
+    private static void validate(WalletOperationDTO dto, long amount) {
+        if (amount < 1) {
+            throw new RequestValidationException("Сумма должна быть положительным числом");
+        }
+        if (dto.getIdempotencyKey() != null && dto.getIdempotencyKey().length() > IDEMPOTENCY_KEY_MAX_LENGTH) {
+            throw new RequestValidationException("Ключ идемпотентности не может быть длиннее 64 символов");
+        }
+        if (!dto.isTargetWalletValid()) {
+            throw new RequestValidationException(
+                    "Кошелек получателя указывается только для перевода и должен отличаться от кошелька отправителя");
+        }
+    }
+
+    private static OperationType operationType(byte code) {
+        return switch (code) {
+            case 1 -> OperationType.DEPOSIT;
+            case 2 -> OperationType.WITHDRAW;
+            case 3 -> OperationType.TRANSFER;
+            default -> throw new MalformedRequestException("неизвестный тип операции " + code);
+        };
+    }
+
+    private static byte operationTypeCode(OperationType type) {
+        return switch (type) {
+            case DEPOSIT -> 1;
+            case WITHDRAW -> 2;
+            case TRANSFER -> 3;
+        };
+    }
+
+    private static void checkLength(int length, int required) {
+        if (length < required) {
+            throw new MalformedRequestException("операция обрывается на " + length + " байте");
+        }
+    }
+
+    private static UUID readUuid(byte[] buffer, int offset) {
+        return new UUID((long) LONG.get(buffer, offset), (long) LONG.get(buffer, offset + 8));
+    }
+
+    private static void writeUuid(byte[] buffer, int offset, UUID uuid) {
+        LONG.set(buffer, offset, uuid.getMostSignificantBits());
+        LONG.set(buffer, offset + 8, uuid.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,67 @@
+package org.yakov.codec;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.MalformedRequestException;
+import org.yakov.model.Wallet;
+
+import java.io.IOException;
+
+/**
+ * Чтение операции и запись кошелька в формате {@link WalletBinaryCodec}. Операция проверяется при разборе,
+ * поэтому обработчик двоичного запроса не использует {@code @Valid}
+ */
+@Component
+public class WalletBinaryMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public WalletBinaryMessageConverter() {
+        super(MediaType.parseMediaType(WalletBinaryCodec.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == WalletOperationDTO.class || clazz == Wallet.class;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return mediaType != null && super.canRead(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        if (clazz != WalletOperationDTO.class) {
+            throw new MalformedRequestException("ожидается операция");
+        }
+        byte[] buffer = new byte[WalletBinaryCodec.OPERATION_MAX_LENGTH + 1];
+        int length = inputMessage.getBody().readNBytes(buffer, 0, buffer.length);
+        if (length > WalletBinaryCodec.OPERATION_MAX_LENGTH) {
+            throw new MalformedRequestException("длина операции превышает " + WalletBinaryCodec.OPERATION_MAX_LENGTH + " байт");
+        }
+        return WalletBinaryCodec.decodeOperation(buffer, length);
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType) {
+        return mediaType != null && !mediaType.isWildcardType() && super.canWrite(mediaType);
+    }
+
+    @Override
+    protected Long getContentLength(Object value, MediaType contentType) {
+        return (long) WalletBinaryCodec.WALLET_LENGTH;
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        if (!(value instanceof Wallet wallet)) {
+            throw new IllegalArgumentException("Двоичный формат поддерживает только кошелек");
+        }
+        byte[] buffer = new byte[WalletBinaryCodec.WALLET_LENGTH];
+        WalletBinaryCodec.encodeWallet(wallet, buffer);
+        outputMessage.getBody().write(buffer);
+    }
+}
@@ -0,0 +1,65 @@
+package org.yakov.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.StringUtils;
+
+/**
+ * Пул соединений R2DBC для неблокирующего API. Пул и менеджер транзакций R2DBC не регистрируются как бины:
+ * при наличии бина ConnectionFactory Spring Boot не создает DataSource, а менеджер транзакций R2DBC
+ * заменил бы менеджер транзакций JPA, используемые блокирующим API.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "wallet.reactive.enabled", havingValue = "true")
+public class ReactiveWalletConfiguration implements DisposableBean {
+
+    private final ConnectionPool connectionPool;
+
+    public ReactiveWalletConfiguration(WalletProperties properties, DataSourceProperties dataSourceProperties) {
+        WalletProperties.Reactive reactive = properties.getReactive();
+        String url = StringUtils.hasText(reactive.getUrl())
+                ? reactive.getUrl()
+                : dataSourceProperties.determineUrl().replaceFirst("^jdbc:", "r2dbc:");
+
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        String username = dataSourceProperties.determineUsername();
+        if (StringUtils.hasText(username)) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        String password = dataSourceProperties.determinePassword();
+        if (password != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("wallet-r2dbc")
+                .initialSize(reactive.getPoolInitialSize())
+                .maxSize(reactive.getPoolMaxSize())
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient walletDatabaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public TransactionalOperator walletTransactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+}
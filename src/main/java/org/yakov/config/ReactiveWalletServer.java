@@ -0,0 +1,77 @@
+package org.yakov.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.yakov.controller.ReactiveWalletHandler;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * HTTP-сервер Reactor Netty для неблокирующего API. Работает на отдельном порту рядом с Tomcat,
+ * все запросы обслуживаются небольшим числом потоков цикла событий.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.reactive.enabled", havingValue = "true")
+public class ReactiveWalletServer implements SmartLifecycle {
+
+    private final WalletProperties.Reactive properties;
+    private final HttpHandler httpHandler;
+    private LoopResources loopResources;
+    private volatile DisposableServer server;
+
+    public ReactiveWalletServer(WalletProperties properties, ReactiveWalletHandler handler, ObjectMapper objectMapper) {
+        this.properties = properties.getReactive();
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        this.httpHandler = RouterFunctions.toHttpHandler(handler.routes(), strategies);
+    }
+
+    @Override
+    public void start() {
+        int threads = properties.getEventLoopThreads() > 0
+                ? properties.getEventLoopThreads()
+                : Runtime.getRuntime().availableProcessors();
+        loopResources = LoopResources.create("wallet-reactive", threads, true);
+        server = HttpServer.create()
+                .port(properties.getPort())
+                .runOn(loopResources)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+        if (loopResources != null) {
+            loopResources.disposeLater().block();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * Фактический порт, в том числе при wallet.reactive.port=0
+     */
+    public int getPort() {
+        return server == null ? -1 : server.port();
+    }
+}
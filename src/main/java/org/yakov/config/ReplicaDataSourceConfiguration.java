@@ -0,0 +1,73 @@
+package org.yakov.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+
+/**
+ * Источник данных с репликой для чтения. Соединение выбирается при первом запросе к БД:
+ * транзакции только для чтения (в том числе методы чтения репозиториев вне транзакции) получают соединение
+ * из пула реплики, остальные - из пула основного сервера. Пул основного сервера настраивается
+ * свойствами spring.datasource.*, пул реплики - свойствами wallet.replica.* и wallet.replica.hikari.*
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "wallet.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration implements DisposableBean {
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+
+    public ReplicaDataSourceConfiguration(DataSourceProperties dataSourceProperties,
+                                          WalletProperties properties,
+                                          Environment environment,
+                                          ObjectProvider<MeterRegistry> meterRegistry) {
+        WalletProperties.Replica settings = properties.getReplica();
+        if (!StringUtils.hasText(settings.getUrl())) {
+            throw new IllegalStateException("Не задан адрес реплики wallet.replica.url");
+        }
+        Binder binder = Binder.get(environment);
+
+        this.primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        this.replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(settings.getUrl())
+                .username(StringUtils.hasText(settings.getUsername()) ? settings.getUsername() : dataSourceProperties.determineUsername())
+                .password(StringUtils.hasText(settings.getPassword()) ? settings.getPassword() : dataSourceProperties.determinePassword())
+                .build();
+        replica.setPoolName("wallet-replica");
+        binder.bind("wallet.replica.hikari", Bindable.ofInstance(replica));
+        replica.setReadOnly(true);
+
+        // Метрики пула основного сервера регистрирует Spring Boot, пул реплики ему не виден
+        meterRegistry.ifAvailable(registry -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+    }
+
+    @Bean
+    public DataSource dataSource() {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replica);
+        return dataSource;
+    }
+
+    @Override
+    public void destroy() {
+        replica.close();
+        primary.close();
+    }
+}
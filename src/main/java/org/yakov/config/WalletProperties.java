@@ -0,0 +1,353 @@
+package org.yakov.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "wallet")
+public class WalletProperties {
+
+    private Execution execution = new Execution();
+    private Combiner combiner = new Combiner();
+    private GroupCommit groupCommit = new GroupCommit();
+    private Batch batch = new Batch();
+    private Stream stream = new Stream();
+    private Cache cache = new Cache();
+    private History history = new History();
+    private Query query = new Query();
+    private Async async = new Async();
+    private Snapshot snapshot = new Snapshot();
+    private Retry retry = new Retry();
+    private Limiter limiter = new Limiter();
+    private Reactive reactive = new Reactive();
+    private Replica replica = new Replica();
+    private Metrics metrics = new Metrics();
+    private HotWallets hotWallets = new HotWallets();
+    private Engine engine = new Engine();
+
+    @Data
+    public static class Execution {
+        /**
+         * Режим выполнения операций: jpa, combining, atomic, group или memory
+         */
+        private String mode = "jpa";
+
+        public boolean isMemory() {
+            return "memory".equals(mode);
+        }
+
+        /**
+         * Операции ставятся в очередь и выполняются потоками режима, число которых ограничивает
+         * количество занятых соединений
+         */
+        public boolean isQueueing() {
+            return "combining".equals(mode) || "group".equals(mode);
+        }
+    }
+
+    @Data
+    public static class Combiner {
+        /**
+         * Максимальное количество операций, применяемых к кошельку в одной транзакции
+         */
+        private int maxBatchSize = 256;
+
+        /**
+         * Количество потоков, применяющих пакеты операций (не должно превышать размер пула соединений)
+         */
+        private int workers = 8;
+    }
+
+    @Data
+    public static class GroupCommit {
+        /**
+         * Время, в течение которого собираются операции группы после первой операции
+         */
+        private Duration window = Duration.ofMillis(2);
+
+        /**
+         * Максимальное количество операций в группе; группа фиксируется сразу после заполнения
+         */
+        private int maxSize = 128;
+
+        /**
+         * Количество потоков, фиксирующих группы (не должно превышать размер пула соединений)
+         */
+        private int workers = 4;
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * Максимальное количество операций в одном пакетном запросе
+         */
+        private int maxSize = 1000;
+
+        /**
+         * Количество кошельков, блокируемых одним запросом SELECT ... FOR UPDATE
+         */
+        private int lockChunkSize = 500;
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * Количество записей, применяемых одной транзакцией
+         */
+        private int chunkSize = 500;
+
+        /**
+         * Максимальное количество одновременно выполняемых транзакций по всем потокам загрузки
+         */
+        private int maxInFlight = 4;
+
+        /**
+         * Максимальная длина одной записи в символах
+         */
+        private int maxLineLength = 4096;
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+
+        /**
+         * Максимальное количество кошельков в кэше
+         */
+        private long maximumSize = 100_000;
+
+        /**
+         * Время жизни записи. Ограничивает устаревание при изменениях, выполненных другими экземплярами сервиса
+         */
+        private Duration expireAfterWrite = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class History {
+        private int defaultPageSize = 100;
+        private int maxPageSize = 10_000;
+
+        /**
+         * Количество строк, получаемых из курсора БД за одно обращение
+         */
+        private int fetchSize = 500;
+    }
+
+    @Data
+    public static class Query {
+        /**
+         * Максимальное количество кошельков в одном запросе чтения
+         */
+        private int maxIds = 1000;
+
+        /**
+         * Количество идентификаторов в одном запросе SELECT ... WHERE id IN
+         */
+        private int chunkSize = 500;
+    }
+
+    @Data
+    public static class Async {
+        /**
+         * Количество потоков, выполняющих операции из очереди
+         */
+        private int workers = 2;
+
+        /**
+         * Максимальное количество операций, выбираемых из очереди за раз и применяемых одной транзакцией
+         */
+        private int batchSize = 100;
+
+        /**
+         * Пауза перед следующей выборкой, если очередь пуста
+         */
+        private Duration pollInterval = Duration.ofMillis(200);
+
+        /**
+         * Время, после которого операция, выбранная остановленным обработчиком, снова становится доступной
+         */
+        private Duration lease = Duration.ofMinutes(1);
+
+        /**
+         * Количество попыток при внутренней ошибке, после которых операция завершается с ошибкой
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Время хранения результатов завершенных операций
+         */
+        private Duration retention = Duration.ofDays(7);
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * Периодически сохранять балансы кошельков, измененных с предыдущей контрольной точки
+         */
+        private boolean enabled = true;
+
+        private Duration interval = Duration.ofMinutes(5);
+
+        /**
+         * Отставание контрольной точки от начала самой ранней открытой транзакции базы, а если таких нет - от текущего
+         * времени. Должно превышать расхождение часов экземпляров приложения и базы. В режиме memory точка
+         * дополнительно ограничена временем самой ранней операции, еще не перенесенной в PostgreSQL
+         */
+        private Duration settleDelay = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Retry {
+        /**
+         * Максимальное количество попыток выполнения операции, включая первую
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Верхняя граница паузы перед второй попыткой; для каждой следующей попытки граница удваивается
+         */
+        private Duration initialBackoff = Duration.ofMillis(5);
+
+        private Duration maxBackoff = Duration.ofMillis(200);
+
+        /**
+         * Общее время на все попытки: повтор, который не успевает завершиться в этот срок, не выполняется
+         */
+        private Duration timeBudget = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Limiter {
+        private boolean enabled = false;
+
+        /**
+         * Максимальное количество одновременно выполняемых операций. 0 - по размеру пула соединений
+         */
+        private int maxConcurrent = 0;
+
+        /**
+         * Максимальное время ожидания в очереди, после которого запрос отклоняется
+         */
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Replica {
+        /**
+         * Направлять транзакции только для чтения на реплику
+         */
+        private boolean enabled = false;
+
+        private String url;
+
+        /**
+         * Пользователь и пароль реплики; если не заданы, используются spring.datasource.username и password
+         */
+        private String username;
+        private String password;
+    }
+
+    @Data
+    public static class Reactive {
+        /**
+         * Запускать неблокирующий API на отдельном порту
+         */
+        private boolean enabled = false;
+
+        private int port = 8081;
+
+        /**
+         * Количество потоков цикла событий. 0 - по числу процессоров
+         */
+        private int eventLoopThreads = 0;
+
+        /**
+         * Адрес R2DBC. Если не задан, получается из spring.datasource.url заменой префикса jdbc: на r2dbc:
+         */
+        private String url;
+
+        private int poolInitialSize = 5;
+        private int poolMaxSize = 20;
+    }
+
+    @Data
+    public static class Metrics {
+        /**
+         * Публиковать гистограммы задержек операций для расчета перцентилей в Prometheus
+         */
+        private boolean histogram = true;
+    }
+
+    @Data
+    public static class HotWallets {
+        private boolean enabled = true;
+
+        /**
+         * Ширина строки count-min sketch; округляется вверх до степени двойки.
+         * Память не зависит от числа кошельков: 4 строки по sketchWidth счетчиков на каждый вид событий
+         */
+        private int sketchWidth = 4096;
+
+        /**
+         * Размер таблицы кандидатов в самые нагруженные кошельки; округляется вверх до степени двойки
+         */
+        private int candidates = 256;
+
+        /**
+         * Интервал, через который счетчики уменьшаются вдвое, чтобы рейтинг отражал текущую нагрузку
+         */
+        private Duration decayInterval = Duration.ofSeconds(30);
+
+        /**
+         * Количество кошельков в ответе по умолчанию
+         */
+        private int defaultLimit = 10;
+    }
+
+    @Data
+    public static class Engine {
+        /**
+         * Количество сегментов, между которыми распределяются кошельки; 0 - по числу процессоров.
+         * Изменение числа сегментов для существующего каталога не допускается
+         */
+        private int shards = 0;
+
+        /**
+         * Каталог журнала предзаписи и снимков
+         */
+        private String directory = "data/wallet-engine";
+
+        /**
+         * Сбрасывать журнал на диск (fsync) перед ответом. Без сброса операции могут быть потеряны при сбое ОС
+         */
+        private boolean fsync = true;
+
+        /**
+         * Максимальное количество операций, фиксируемых одним сбросом журнала
+         */
+        private int maxBatchSize = 1024;
+
+        /**
+         * Количество записей журнала сегмента между снимками
+         */
+        private int snapshotEvery = 100_000;
+
+        /**
+         * Количество ключей идемпотентности, хранимых в памяти сегмента. Ключ удаляется из памяти только
+         * после переноса операции в PostgreSQL, где его находит проверка перед выполнением
+         */
+        private int idempotencyKeys = 100_000;
+
+        /**
+         * Максимальное количество записей журнала, переносимых в PostgreSQL одной транзакцией
+         */
+        private int syncBatchSize = 1000;
+
+        /**
+         * Максимальное количество записей, ожидающих переноса в PostgreSQL; при заполнении запись операций приостанавливается
+         */
+        private int syncQueueCapacity = 100_000;
+    }
+}
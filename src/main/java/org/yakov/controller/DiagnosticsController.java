@@ -0,0 +1,39 @@
+package org.yakov.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.yakov.cache.WalletCache;
+import org.yakov.dto.CacheStatsDTO;
+import org.yakov.dto.HotWalletsDTO;
+import org.yakov.dto.RetryStatsDTO;
+import org.yakov.metrics.HotWalletTracker;
+import org.yakov.service.WalletOperationRetrier;
+
+@RestController
+@RequestMapping("/api/v1/diagnostics")
+@RequiredArgsConstructor
+public class DiagnosticsController {
+
+    private final WalletCache walletCache;
+    private final WalletOperationRetrier walletOperationRetrier;
+    private final HotWalletTracker hotWalletTracker;
+
+    @GetMapping("/cache")
+    public ResponseEntity<CacheStatsDTO> getCacheStats() {
+        return ResponseEntity.ok(walletCache.stats());
+    }
+
+    @GetMapping("/retries")
+    public ResponseEntity<RetryStatsDTO> getRetryStats() {
+        return ResponseEntity.ok(walletOperationRetrier.stats());
+    }
+
+    @GetMapping("/hot-wallets")
+    public ResponseEntity<HotWalletsDTO> getHotWallets(@RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(hotWalletTracker.top(limit));
+    }
+}
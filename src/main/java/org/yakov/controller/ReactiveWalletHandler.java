@@ -0,0 +1,99 @@
+package org.yakov.controller;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.ErrorCode;
+import org.yakov.exception.ErrorResponseEncoder;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.service.ReactiveWalletService;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Маршруты неблокирующего API. Пути, формат запросов и ответов, а также коды ошибок
+ * совпадают с {@link WalletController} и {@link org.yakov.exception.GlobalExceptionHandler};
+ * тело ошибки кодирует тот же {@link ErrorResponseEncoder}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.reactive.enabled", havingValue = "true")
+public class ReactiveWalletHandler {
+
+    private final ReactiveWalletService walletService;
+    private final Validator validator;
+    private final ErrorResponseEncoder encoder = new ErrorResponseEncoder();
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .POST("/api/v1/wallets", this::operate)
+                .GET("/api/v1/wallets/{uuid}", this::getWallet)
+                .build();
+    }
+
+    private Mono<ServerResponse> operate(ServerRequest request) {
+        return request.bodyToMono(WalletOperationDTO.class)
+                .switchIfEmpty(Mono.error(() -> new DecodingException("Пустое тело запроса")))
+                .map(dto -> validate(dto, request.headers().firstHeader("Idempotency-Key")))
+                .flatMap(walletService::processOperation)
+                .flatMap(wallet -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(wallet))
+                .onErrorResume(ex -> error(request, ex));
+    }
+
+    private Mono<ServerResponse> getWallet(ServerRequest request) {
+        return Mono.fromSupplier(() -> UUID.fromString(request.pathVariable("uuid")))
+                .flatMap(walletService::get)
+                .flatMap(wallet -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(wallet))
+                .onErrorResume(ex -> error(request, ex));
+    }
+
+    private WalletOperationDTO validate(WalletOperationDTO dto, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            if (idempotencyKey.length() > 64) {
+                throw new RequestValidationException("Ключ идемпотентности не может быть длиннее 64 символов");
+            }
+            dto.setIdempotencyKey(idempotencyKey);
+        }
+        Set<ConstraintViolation<WalletOperationDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new RequestValidationException(violations.iterator().next().getMessage());
+        }
+        return dto;
+    }
+
+    private Mono<ServerResponse> error(ServerRequest request, Throwable ex) {
+        ErrorCode errorCode;
+        String message;
+        String detail = null;
+        if (ex instanceof DecodingException || ex instanceof ServerWebInputException) {
+            errorCode = ErrorCode.INVALID_JSON;
+            message = "Некорректный формат JSON запроса";
+        } else {
+            errorCode = ErrorCode.of(ex);
+            switch (errorCode) {
+                case VALIDATION_ERROR -> {
+                    message = "Ошибка валидации запроса: ";
+                    detail = String.valueOf(ex.getMessage());
+                }
+                case INTERNAL_SERVER_ERROR -> message = "Внутренняя ошибка сервера";
+                default -> message = String.valueOf(ex.getMessage());
+            }
+        }
+
+        return ServerResponse.status(errorCode.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(encoder.encode(errorCode, message, detail, request.path()));
+    }
+}
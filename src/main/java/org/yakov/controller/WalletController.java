@@ -1,13 +1,38 @@
 package org.yakov.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.yakov.codec.WalletBinaryCodec;
+import org.yakov.dto.QueuedOperationDTO;
+import org.yakov.dto.WalletBalanceDTO;
+import org.yakov.dto.WalletBatchRequestDTO;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletHistoryQuery;
 import org.yakov.dto.WalletOperationDTO;
+import org.yakov.dto.WalletQueryRequestDTO;
+import org.yakov.dto.WalletQueryResponseDTO;
+import org.yakov.exception.RequestValidationException;
 import org.yakov.model.Wallet;
+import org.yakov.service.AsyncWalletService;
+import org.yakov.service.WalletBatchService;
+import org.yakov.service.WalletConcurrencyLimiter;
+import org.yakov.service.WalletHistoryService;
+import org.yakov.service.WalletOperationRetrier;
+import org.yakov.service.WalletQueryService;
 import org.yakov.service.WalletService;
+import org.yakov.service.WalletSnapshotService;
+import org.yakov.service.WalletStreamService;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
 import java.util.UUID;
 
 @RestController
@@ -15,17 +40,113 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class WalletController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
     private final WalletService walletService;
+    private final WalletOperationRetrier walletOperationRetrier;
+    private final WalletConcurrencyLimiter walletConcurrencyLimiter;
+    private final WalletBatchService walletBatchService;
+    private final WalletStreamService walletStreamService;
+    private final WalletHistoryService walletHistoryService;
+    private final WalletQueryService walletQueryService;
+    private final AsyncWalletService asyncWalletService;
+    private final WalletSnapshotService walletSnapshotService;
 
+    /**
+     * Выполняет операцию. С заголовком {@code Prefer: respond-async} операция только принимается в очередь:
+     * ответ 202 содержит идентификатор операции, а результат возвращает {@link #getQueuedOperation(UUID)}
+     */
     @PostMapping
-    public ResponseEntity<Wallet> operate(@RequestBody @Valid WalletOperationDTO request) {
-        Wallet wallet = walletService.processOperation(request);
-        return ResponseEntity.ok(wallet);
+    public ResponseEntity<?> operate(@RequestBody @Valid WalletOperationDTO request,
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                     @RequestHeader(value = "Prefer", required = false) String prefer) {
+        if (AsyncWalletService.prefersAsync(prefer)) {
+            applyIdempotencyKey(request, idempotencyKey);
+            QueuedOperationDTO operation = asyncWalletService.submit(request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/wallets/operations/" + operation.getOperationId()))
+                    .header(PREFERENCE_APPLIED, "respond-async")
+                    .body(operation);
+        }
+        return ResponseEntity.ok(process(request, idempotencyKey));
+    }
+
+    /**
+     * Та же операция в двоичном формате; проверка выполняется при разборе тела в {@link WalletBinaryCodec}
+     */
+    @PostMapping(consumes = WalletBinaryCodec.MEDIA_TYPE, produces = WalletBinaryCodec.MEDIA_TYPE)
+    public ResponseEntity<Wallet> operateBinary(@RequestBody WalletOperationDTO request,
+                                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return ResponseEntity.ok(process(request, idempotencyKey));
+    }
+
+    private Wallet process(WalletOperationDTO request, String idempotencyKey) {
+        applyIdempotencyKey(request, idempotencyKey);
+        return walletOperationRetrier.processOperation(request);
+    }
+
+    private static void applyIdempotencyKey(WalletOperationDTO request, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            if (idempotencyKey.length() > 64) {
+                throw new RequestValidationException("Ключ идемпотентности не может быть длиннее 64 символов");
+            }
+            request.setIdempotencyKey(idempotencyKey);
+        }
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<WalletBatchResponseDTO> operateBatch(@RequestBody @Valid WalletBatchRequestDTO request) {
+        WalletBatchResponseDTO response = walletConcurrencyLimiter.execute(
+                () -> walletBatchService.process(request.getOperations(), request.getMode()));
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping(value = "/stream", consumes = NDJSON, produces = NDJSON)
+    public void operateStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        walletStreamService.process(request.getInputStream(), response.getOutputStream());
+    }
+
+    @PostMapping("/query")
+    public ResponseEntity<WalletQueryResponseDTO> queryWallets(@RequestBody @Valid WalletQueryRequestDTO request) {
+        WalletQueryResponseDTO response = walletConcurrencyLimiter.execute(() -> walletQueryService.find(request.getWalletIds()));
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/operations/{operationId}")
+    public ResponseEntity<QueuedOperationDTO> getQueuedOperation(@PathVariable UUID operationId) {
+        QueuedOperationDTO operation = walletConcurrencyLimiter.execute(() -> asyncWalletService.get(operationId));
+        return ResponseEntity.ok(operation);
     }
 
     @GetMapping("/{uuid}")
-    public ResponseEntity<Wallet> getWallet(@PathVariable UUID uuid) {
-        Wallet wallet = walletService.get(uuid);
+    public ResponseEntity<Wallet> getWallet(@PathVariable UUID uuid,
+                                            @RequestParam(required = false) Long minVersion) {
+        Wallet wallet = walletConcurrencyLimiter.execute(() -> minVersion == null
+                ? walletService.get(uuid)
+                : walletQueryService.get(uuid, minVersion));
         return ResponseEntity.ok(wallet);
     }
+
+    @GetMapping("/{uuid}/balance")
+    public ResponseEntity<WalletBalanceDTO> getBalanceAt(
+            @PathVariable UUID uuid,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        WalletBalanceDTO balance = walletConcurrencyLimiter.execute(() -> walletSnapshotService.balanceAt(uuid, at));
+        return ResponseEntity.ok(balance);
+    }
+
+    @GetMapping("/{uuid}/operations")
+    public ResponseEntity<StreamingResponseBody> getOperations(
+            @PathVariable UUID uuid,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        WalletHistoryQuery query = walletHistoryService.prepare(uuid, from, to, cursor, limit);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(output -> walletHistoryService.write(query, output));
+    }
 }
@@ -0,0 +1,21 @@
+package org.yakov.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotWalletDTO {
+    private UUID walletId;
+
+    /**
+     * Оценка числа событий с учетом затухания; может быть завышена, но не занижена
+     */
+    private long count;
+
+    private double ratePerSecond;
+}
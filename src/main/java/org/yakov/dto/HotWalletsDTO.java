@@ -0,0 +1,28 @@
+package org.yakov.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotWalletsDTO {
+
+    /**
+     * Эффективная длительность окна, по которому рассчитана интенсивность, в секундах
+     */
+    private double windowSeconds;
+
+    /**
+     * Кошельки с наибольшим числом операций, по убыванию
+     */
+    private List<HotWalletDTO> byOperations;
+
+    /**
+     * Кошельки с наибольшим числом конфликтов параллельного изменения, по убыванию
+     */
+    private List<HotWalletDTO> byConflicts;
+}
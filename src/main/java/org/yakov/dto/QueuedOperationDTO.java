@@ -0,0 +1,29 @@
+package org.yakov.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.yakov.model.QueuedOperationStatus;
+import org.yakov.model.Wallet;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Асинхронная операция: состояние, а после завершения - кошелек после операции или ошибка
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueuedOperationDTO {
+    private UUID operationId;
+    private UUID walletId;
+    private QueuedOperationStatus status;
+    private String errorCode;
+    private String message;
+    private Wallet wallet;
+    private Instant createdAt;
+    private Instant completedAt;
+}
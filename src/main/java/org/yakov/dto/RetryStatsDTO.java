@@ -0,0 +1,29 @@
+package org.yakov.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetryStatsDTO {
+    private long operations;
+    private long retriedOperations;
+    private long gaveUp;
+    private double attemptsPerOperation;
+
+    /**
+     * Количество операций по числу попыток: первый элемент соответствует одной попытке
+     */
+    private List<Long> attemptsDistribution;
+
+    /**
+     * Кошельки с наибольшим числом конфликтов, по убыванию
+     */
+    private Map<UUID, Long> contendedWallets;
+}
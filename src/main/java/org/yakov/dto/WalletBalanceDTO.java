@@ -0,0 +1,28 @@
+package org.yakov.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Баланс кошелька на момент времени и снимок, от которого он рассчитан
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WalletBalanceDTO {
+    private UUID walletId;
+    private BigDecimal balance;
+    private Instant at;
+
+    /**
+     * Время снимка; отсутствует, если момент предшествует первому снимку кошелька
+     */
+    private Instant snapshotAt;
+}
@@ -0,0 +1,22 @@
+package org.yakov.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.yakov.model.BatchMode;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletBatchRequestDTO {
+    @NotNull(message = "Режим пакета не может быть пустым")
+    private BatchMode mode = BatchMode.PER_ITEM;
+
+    @NotEmpty(message = "Список операций не может быть пустым")
+    private List<@Valid @NotNull(message = "Операция не может быть пустой") WalletOperationDTO> operations;
+}
@@ -0,0 +1,24 @@
+package org.yakov.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.yakov.model.BatchMode;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletBatchResponseDTO {
+    private BatchMode mode;
+
+    /**
+     * Признак того, что изменения пакета зафиксированы в БД
+     */
+    private boolean applied;
+
+    private int succeeded;
+    private int failed;
+    private List<WalletOperationResultDTO> results;
+}
@@ -0,0 +1,17 @@
+package org.yakov.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Параметры чтения страницы истории операций кошелька
+ *
+ * @param walletId      идентификатор кошелька
+ * @param from          начало интервала включительно, может отсутствовать
+ * @param to            конец интервала не включительно, может отсутствовать
+ * @param afterCreated  время создания последней операции предыдущей страницы, может отсутствовать
+ * @param afterId       идентификатор последней операции предыдущей страницы, может отсутствовать
+ * @param limit         размер страницы
+ */
+public record WalletHistoryQuery(UUID walletId, Instant from, Instant to, Instant afterCreated, Long afterId, int limit) {
+}
@@ -1,7 +1,11 @@
 package org.yakov.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,5 +26,30 @@ public class WalletOperationDTO {
 
     @NotNull(message = "Сумма не может быть пустой")
     @DecimalMin(value = "0.01", message = "Сумма должна быть положительным числом")
+    @Digits(integer = 17, fraction = 2, message = "Сумма должна содержать не более 17 цифр до и 2 после запятой")
     private BigDecimal amount;
+
+    /**
+     * Ключ идемпотентности: повторный запрос с тем же ключом возвращает результат исходной операции
+     */
+    @Size(max = 64, message = "Ключ идемпотентности не может быть длиннее 64 символов")
+    private String idempotencyKey;
+
+    /**
+     * Кошелек получателя, указывается только для операции {@link OperationType#TRANSFER}
+     */
+    private UUID targetWalletId;
+
+    public WalletOperationDTO(UUID walletId, OperationType operationType, BigDecimal amount) {
+        this(walletId, operationType, amount, null, null);
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "Кошелек получателя указывается только для перевода и должен отличаться от кошелька отправителя")
+    public boolean isTargetWalletValid() {
+        if (operationType != OperationType.TRANSFER) {
+            return targetWalletId == null;
+        }
+        return targetWalletId != null && !targetWalletId.equals(walletId);
+    }
 }
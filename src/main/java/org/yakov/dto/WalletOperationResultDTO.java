@@ -0,0 +1,47 @@
+package org.yakov.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.yakov.exception.ErrorCode;
+import org.yakov.model.Wallet;
+
+import java.util.UUID;
+
+/**
+ * Результат отдельной операции пакета: либо состояние кошелька после операции, либо ошибка
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WalletOperationResultDTO {
+    private int index;
+    private UUID walletId;
+    private int status;
+    private String errorCode;
+    private String message;
+    private Wallet wallet;
+
+    public static WalletOperationResultDTO success(int index, Wallet wallet) {
+        return new WalletOperationResultDTO(index, wallet.getId(), 200, null, null, wallet);
+    }
+
+    public static WalletOperationResultDTO failure(int index, UUID walletId, ErrorCode errorCode, String message) {
+        return new WalletOperationResultDTO(index, walletId, errorCode.getStatus().value(), errorCode.name(), message, null);
+    }
+
+    /**
+     * Формирует результат с тем же кодом ошибки, что вернул бы {@code GlobalExceptionHandler}
+     */
+    public static WalletOperationResultDTO failure(int index, UUID walletId, Throwable ex) {
+        ErrorCode errorCode = ErrorCode.of(ex);
+        String message = errorCode == ErrorCode.INTERNAL_SERVER_ERROR ? "Внутренняя ошибка сервера" : ex.getMessage();
+        return failure(index, walletId, errorCode, message);
+    }
+
+    public boolean isSuccess() {
+        return errorCode == null;
+    }
+}
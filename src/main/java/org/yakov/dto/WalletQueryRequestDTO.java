@@ -0,0 +1,18 @@
+package org.yakov.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletQueryRequestDTO {
+    @NotEmpty(message = "Список кошельков не может быть пустым")
+    private List<@NotNull(message = "ID кошелька не может быть пустым") UUID> walletIds;
+}
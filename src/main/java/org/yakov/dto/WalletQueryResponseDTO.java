@@ -0,0 +1,20 @@
+package org.yakov.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.yakov.model.Wallet;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Результат чтения нескольких кошельков: найденные кошельки в порядке запроса и идентификаторы ненайденных
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletQueryResponseDTO {
+    private List<Wallet> wallets;
+    private List<UUID> missingIds;
+}
@@ -0,0 +1,242 @@
+package org.yakov.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фоновый перенос записей журнала в {@link WalletStore}. Записи всех сегментов переносятся пакетами
+ * в порядке поступления; при ошибке пакет повторяется, пока перенос не удастся или движок не остановится.
+ * Непереданные записи остаются в журнале и переносятся после перезапуска.
+ */
+@Slf4j
+final class EngineSynchronizer implements AutoCloseable {
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final WalletStore store;
+    private final int batchSize;
+    private final BlockingQueue<Item> queue;
+    private final AtomicLongArray syncedLsns;
+
+    /**
+     * Время создания записей журнала операций, поставленных в очередь и еще не перенесенных, по номеру постановки
+     */
+    private final Map<Long, Instant> unsynced = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    EngineSynchronizer(WalletStore store, int shards, int batchSize, int capacity) {
+        this.store = store;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.syncedLsns = new AtomicLongArray(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            syncedLsns.set(shard, store.syncedLsn(shard));
+        }
+        this.thread = new Thread(this::run, "wallet-engine-sync");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Ставит запись в очередь переноса, ожидая места при заполненной очереди
+     */
+    void enqueue(int shard, LogRecord record) {
+        long number = sequence.incrementAndGet();
+        if (!record.mirror()) {
+            record.entries().stream()
+                    .map(WalletOperation::getCreatedAt)
+                    .min(Comparator.naturalOrder())
+                    .ifPresent(createdAt -> unsynced.put(number, createdAt));
+        }
+        try {
+            queue.put(new Item(shard, record, number));
+        } catch (InterruptedException e) {
+            // Запись сохранена в журнале и будет перенесена после перезапуска
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long syncedLsn(int shard) {
+        return syncedLsns.get(shard);
+    }
+
+    int lag() {
+        return queue.size();
+    }
+
+    /**
+     * Самое раннее время создания среди записей журнала операций, ожидающих переноса
+     */
+    Optional<Instant> oldestUnsynced() {
+        return unsynced.values().stream().min(Comparator.naturalOrder());
+    }
+
+    /**
+     * Дожидается переноса поставленных в очередь записей не дольше указанного времени
+     */
+    void close(long timeoutMillis) {
+        running = false;
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        close(30_000);
+    }
+
+    private void run() {
+        List<Item> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Item first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            if (!write(batch)) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Переносит пакет. Если пакет нарушает ограничения БД, записи переносятся по одной: запись с ключом
+     * идемпотентности, уже сохраненным в БД, переносится без ключа, чтобы сохранить изменение баланса,
+     * а запись, нарушающая другие ограничения, пропускается. Повтор такой записи не удастся никогда,
+     * и перенос остановился бы вместе со всеми сегментами, ожидающими места в очереди
+     *
+     * @return false, если перенос прерван остановкой
+     */
+    private boolean write(List<Item> batch) {
+        try {
+            return store(batch, Mode.AS_IS);
+        } catch (DataIntegrityViolationException e) {
+            log.error("Пакет из {} записей журнала нарушает ограничения БД, записи переносятся по одной", batch.size(), e);
+        }
+        for (Item item : batch) {
+            if (!writeSingle(item)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean writeSingle(Item item) {
+        try {
+            return store(List.of(item), Mode.AS_IS);
+        } catch (DataIntegrityViolationException e) {
+            log.error("Запись {} сегмента {} нарушает ограничения БД, повтор без ключа идемпотентности",
+                    item.record().lsn(), item.shard(), e);
+        }
+        try {
+            return store(List.of(item), Mode.WITHOUT_KEYS);
+        } catch (DataIntegrityViolationException e) {
+            log.error("Запись {} сегмента {} нарушает ограничения БД и пропущена", item.record().lsn(), item.shard(), e);
+        }
+        return store(List.of(item), Mode.SKIP);
+    }
+
+    /**
+     * Повторяет перенос при временных ошибках, пока он не удастся или синхронизатор не остановится
+     *
+     * @throws DataIntegrityViolationException если записи нарушают ограничения БД
+     */
+    private boolean store(List<Item> batch, Mode mode) {
+        List<WalletOperation> entries = new ArrayList<>();
+        Map<UUID, Wallet> wallets = new HashMap<>();
+        Map<Integer, Long> lsns = new HashMap<>();
+        for (Item item : batch) {
+            lsns.put(item.shard(), item.record().lsn());
+            if (item.record().mirror() || mode == Mode.SKIP) {
+                continue;
+            }
+            for (WalletOperation entry : item.record().entries()) {
+                entries.add(mode == Mode.WITHOUT_KEYS ? withoutKey(entry) : entry);
+                Wallet wallet = wallets.get(entry.getWalletId());
+                if (wallet == null || wallet.getVersion() < entry.getWalletVersion()) {
+                    Wallet state = new Wallet();
+                    state.setId(entry.getWalletId());
+                    state.setBalance(entry.getBalanceAfter());
+                    state.setVersion(entry.getWalletVersion());
+                    wallets.put(entry.getWalletId(), state);
+                }
+            }
+        }
+
+        while (true) {
+            try {
+                store.write(entries, wallets.values(), lsns);
+                lsns.forEach(syncedLsns::set);
+                batch.forEach(item -> unsynced.remove(item.number()));
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                log.warn("Не удалось перенести {} записей журнала в БД, повтор через {} мс", batch.size(), RETRY_DELAY_MILLIS, e);
+                if (!running) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private static WalletOperation withoutKey(WalletOperation entry) {
+        WalletOperation copy = new WalletOperation();
+        copy.setWalletId(entry.getWalletId());
+        copy.setCounterpartyWalletId(entry.getCounterpartyWalletId());
+        copy.setOperationType(entry.getOperationType());
+        copy.setAmount(entry.getAmount());
+        copy.setBalanceAfter(entry.getBalanceAfter());
+        copy.setWalletVersion(entry.getWalletVersion());
+        copy.setCreatedAt(entry.getCreatedAt());
+        return copy;
+    }
+
+    private enum Mode {
+        AS_IS,
+        /**
+         * Записи журнала операций без ключей идемпотентности
+         */
+        WITHOUT_KEYS,
+        /**
+         * Только номер перенесенной записи
+         */
+        SKIP
+    }
+
+    private record Item(int shard, LogRecord record, long number) {
+    }
+}
@@ -0,0 +1,24 @@
+package org.yakov.engine;
+
+import org.yakov.model.WalletOperation;
+
+import java.util.List;
+
+/**
+ * Запись журнала предзаписи сегмента: записи журнала операций, созданные одной операцией.
+ * Каждая запись журнала операций содержит баланс и версию кошелька после изменения,
+ * поэтому при восстановлении запись применяется, только если версия кошелька в ней больше текущей.
+ *
+ * @param lsn         номер записи в журнале сегмента
+ * @param mirror      запись только для восстановления состояния сегмента, в PostgreSQL не переносится:
+ *                    копия перевода между сегментами в журнале получателя или отмена такой копии
+ * @param originShard сегмент отправителя, в журнале которого находится основная запись перевода
+ * @param originLsn   номер основной записи перевода в журнале отправителя или 0
+ * @param entries     записи журнала операций
+ */
+record LogRecord(long lsn, boolean mirror, int originShard, long originLsn, List<WalletOperation> entries) {
+
+    static LogRecord of(long lsn, List<WalletOperation> entries) {
+        return new LogRecord(lsn, false, 0, 0, entries);
+    }
+}
@@ -0,0 +1,96 @@
+package org.yakov.engine;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Перенос изменений движка в PostgreSQL. Номер перенесенной записи сохраняется в той же транзакции,
+ * что и сами изменения, поэтому после перезапуска перенос продолжается без пропусков и повторов.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.execution.mode", havingValue = "memory")
+public class PostgresWalletStore implements WalletStore {
+
+    private static final String INSERT_ENTRY = """
+            INSERT INTO wallet_operations
+                (id, wallet_id, counterparty_wallet_id, operation_type, amount, balance_after, wallet_version, idempotency_key, created_at)
+            VALUES (nextval('wallet_operations_seq'), ?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private static final String UPDATE_WALLET =
+            "UPDATE wallets SET balance = ?, version = ? WHERE id = ? AND version < ?";
+
+    private static final String UPDATE_SYNCED_LSN = """
+            INSERT INTO wallet_engine_sync (shard, lsn) VALUES (?, ?)
+            ON CONFLICT (shard) DO UPDATE SET lsn = EXCLUDED.lsn""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public PostgresWalletStore(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Optional<Wallet> load(UUID walletId) {
+        return jdbcTemplate.query("SELECT id, balance, version FROM wallets WHERE id = ?", (rs, rowNum) -> {
+            Wallet wallet = new Wallet();
+            wallet.setId(rs.getObject("id", UUID.class));
+            wallet.setBalance(rs.getBigDecimal("balance"));
+            wallet.setVersion(rs.getLong("version"));
+            return wallet;
+        }, walletId).stream().findFirst();
+    }
+
+    @Override
+    public long syncedLsn(int shard) {
+        List<Long> lsn = jdbcTemplate.queryForList("SELECT lsn FROM wallet_engine_sync WHERE shard = ?", Long.class, shard);
+        return lsn.isEmpty() ? 0 : lsn.get(0);
+    }
+
+    @Override
+    public void write(List<WalletOperation> entries, Collection<Wallet> wallets, Map<Integer, Long> syncedLsns) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!entries.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ENTRY, entries, entries.size(), (ps, entry) -> {
+                    ps.setObject(1, entry.getWalletId());
+                    ps.setObject(2, entry.getCounterpartyWalletId(), Types.OTHER);
+                    ps.setString(3, entry.getOperationType().name());
+                    ps.setBigDecimal(4, entry.getAmount());
+                    ps.setBigDecimal(5, entry.getBalanceAfter());
+                    ps.setLong(6, entry.getWalletVersion());
+                    ps.setString(7, entry.getIdempotencyKey());
+                    ps.setTimestamp(8, Timestamp.from(entry.getCreatedAt()));
+                });
+            }
+            if (!wallets.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_WALLET, wallets, wallets.size(), (ps, wallet) -> {
+                    ps.setBigDecimal(1, wallet.getBalance());
+                    ps.setLong(2, wallet.getVersion());
+                    ps.setObject(3, wallet.getId());
+                    ps.setLong(4, wallet.getVersion());
+                });
+            }
+            jdbcTemplate.batchUpdate(UPDATE_SYNCED_LSN, new ArrayList<>(syncedLsns.entrySet()), syncedLsns.size(),
+                    (ps, lsn) -> {
+                        ps.setInt(1, lsn.getKey());
+                        ps.setLong(2, lsn.getValue());
+                    });
+        });
+    }
+}
@@ -0,0 +1,158 @@
+package org.yakov.engine;
+
+import org.yakov.model.Wallet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимок состояния сегмента: балансы кошельков и ключи идемпотентности на момент записи журнала с номером lsn.
+ * Снимок записывается во временный файл и переименовывается после сброса на диск,
+ * поэтому при сбое остается предыдущий целый снимок.
+ *
+ * @param lsn     номер последней записи журнала, учтенной в снимке
+ * @param wallets кошельки сегмента
+ * @param keys    ключи идемпотентности в порядке добавления
+ */
+record ShardSnapshot(long lsn, Collection<Wallet> wallets, Map<String, KeyedResult> keys) {
+
+    private static final int FORMAT = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    static final ShardSnapshot EMPTY = new ShardSnapshot(0, List.of(), Map.of());
+
+    /**
+     * Результат операции с ключом идемпотентности
+     *
+     * @param lsn номер записи журнала, которой выполнена операция
+     */
+    record KeyedResult(UUID walletId, BigDecimal balance, long version, long lsn) {
+
+        Wallet toWallet() {
+            Wallet wallet = new Wallet();
+            wallet.setId(walletId);
+            wallet.setBalance(balance);
+            wallet.setVersion(version);
+            return wallet;
+        }
+    }
+
+    void write(Path directory) throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 64 * 1024));
+            output.writeInt(FORMAT);
+            output.writeLong(lsn);
+            output.writeInt(wallets.size());
+            for (Wallet wallet : wallets) {
+                WriteAheadLog.writeUuid(output, wallet.getId());
+                WriteAheadLog.writeDecimal(output, wallet.getBalance());
+                output.writeLong(wallet.getVersion());
+            }
+            output.writeInt(keys.size());
+            for (Map.Entry<String, KeyedResult> entry : keys.entrySet()) {
+                KeyedResult result = entry.getValue();
+                output.writeUTF(entry.getKey());
+                WriteAheadLog.writeUuid(output, result.walletId());
+                WriteAheadLog.writeDecimal(output, result.balance());
+                output.writeLong(result.version());
+                output.writeLong(result.lsn());
+            }
+            output.flush();
+            // Сумма записывается в конце и сама в нее не входит
+            long checksum = crc.getValue();
+            new DataOutputStream(Channels.newOutputStream(channel)).writeLong(checksum);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path old : files.filter(ShardSnapshot::isSnapshot).filter(path -> !path.equals(target)).toList()) {
+                Files.deleteIfExists(old);
+            }
+        }
+    }
+
+    /**
+     * Читает последний снимок сегмента
+     *
+     * @return снимок или {@link #EMPTY}, если снимков нет
+     */
+    static ShardSnapshot read(Path directory) {
+        Path latest;
+        try (Stream<Path> files = Files.list(directory)) {
+            latest = files.filter(ShardSnapshot::isSnapshot)
+                    .max(Comparator.comparing(path -> path.getFileName().toString()))
+                    .orElse(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (latest == null) {
+            return EMPTY;
+        }
+
+        CRC32 crc = new CRC32();
+        try (DataInputStream raw = new DataInputStream(new BufferedInputStream(Files.newInputStream(latest)))) {
+            DataInputStream input = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (input.readInt() != FORMAT) {
+                throw new IllegalStateException("Неподдерживаемый формат снимка " + latest);
+            }
+            long lsn = input.readLong();
+            int walletCount = input.readInt();
+            List<Wallet> wallets = new ArrayList<>(walletCount);
+            for (int i = 0; i < walletCount; i++) {
+                Wallet wallet = new Wallet();
+                wallet.setId(WriteAheadLog.readUuid(input));
+                wallet.setBalance(WriteAheadLog.readDecimal(input));
+                wallet.setVersion(input.readLong());
+                wallets.add(wallet);
+            }
+            int keyCount = input.readInt();
+            Map<String, KeyedResult> keys = new LinkedHashMap<>();
+            for (int i = 0; i < keyCount; i++) {
+                String key = input.readUTF();
+                keys.put(key, new KeyedResult(WriteAheadLog.readUuid(input), WriteAheadLog.readDecimal(input),
+                        input.readLong(), input.readLong()));
+            }
+            long checksum = crc.getValue();
+            if (raw.readLong() != checksum) {
+                throw new IllegalStateException("Неверная контрольная сумма снимка " + latest);
+            }
+            return new ShardSnapshot(lsn, wallets, keys);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isSnapshot(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+}
@@ -0,0 +1,225 @@
+package org.yakov.engine;
+
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletOperations;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Движок кошельков в памяти. Кошельки распределены по сегментам по хешу идентификатора;
+ * каждый сегмент обрабатывает свои операции в одном потоке и фиксирует их в собственном журнале предзаписи.
+ * Изменения переносятся в PostgreSQL асинхронно, поэтому источником истины для движка является журнал.
+ */
+public class WalletEngine implements AutoCloseable {
+
+    private static final String META_FILE = "engine.properties";
+
+    private final WalletShard[] shards;
+    private final EngineSynchronizer synchronizer;
+
+    /**
+     * Зафиксированное состояние кошельков для чтения без обращения к потокам сегментов
+     */
+    private final Map<UUID, Wallet> published = new ConcurrentHashMap<>();
+
+    /**
+     * Ключи идемпотентности операций всех сегментов и результаты этих операций. Сегмент проверяет только свои ключи,
+     * а операции с одним ключом могут относиться к кошелькам разных сегментов. Ключ удаляется при ошибке операции
+     * и когда сегмент удаляет его из памяти после переноса операции в PostgreSQL
+     */
+    private final Map<String, CompletableFuture<Wallet>> reservedKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Упорядочивает постановку барьеров переводов между сегментами, чтобы все сегменты проходили их в одном порядке
+     */
+    private final Object crossShardLock = new Object();
+
+    private volatile boolean closed;
+
+    public WalletEngine(WalletProperties.Engine properties, WalletStore store) {
+        int shardCount = properties.getShards() > 0 ? properties.getShards() : Runtime.getRuntime().availableProcessors();
+        Path directory = Path.of(properties.getDirectory());
+        checkShardCount(directory, shardCount);
+
+        this.synchronizer = new EngineSynchronizer(store, shardCount, properties.getSyncBatchSize(),
+                properties.getSyncQueueCapacity());
+        this.shards = new WalletShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new WalletShard(i, shardCount, directory.resolve("shard-" + i), store, synchronizer, published, reservedKeys,
+                    properties.getMaxBatchSize(), properties.getSnapshotEvery(), properties.getIdempotencyKeys(),
+                    properties.isFsync());
+        }
+        for (WalletShard shard : shards) {
+            shard.cancelUnconfirmedTransfer(shards);
+        }
+        for (WalletShard shard : shards) {
+            shard.start();
+        }
+    }
+
+    /**
+     * Выполняет операцию в сегменте кошелька. Контракт совпадает с {@link org.yakov.service.WalletService#processOperation}
+     */
+    public Wallet process(WalletOperationDTO dto) {
+        WalletOperations.validateAmount(dto.getAmount());
+        if (dto.getOperationType() == OperationType.TRANSFER) {
+            WalletOperations.validateTransferTarget(dto.getWalletId(), dto.getTargetWalletId());
+        }
+        checkOpen();
+
+        String key = dto.getIdempotencyKey();
+        if (key == null) {
+            return execute(dto);
+        }
+        CompletableFuture<Wallet> reservation = new CompletableFuture<>();
+        CompletableFuture<Wallet> existing = reservedKeys.putIfAbsent(key, reservation);
+        if (existing != null) {
+            return replay(existing);
+        }
+        try {
+            Wallet wallet = execute(dto);
+            reservation.complete(WalletOperations.copyOf(wallet));
+            return wallet;
+        } catch (RuntimeException e) {
+            reservedKeys.remove(key, reservation);
+            reservation.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Результат операции с тем же ключом. Если она еще выполняется, результат ожидается; если она не удалась,
+     * вызывающий получает конфликт и повторяет запрос, который тогда выполняется заново
+     */
+    private static Wallet replay(CompletableFuture<Wallet> reservation) {
+        try {
+            return WalletOperations.copyOf(reservation.join());
+        } catch (CompletionException e) {
+            throw WalletOperations.duplicateIdempotencyKey();
+        }
+    }
+
+    private Wallet execute(WalletOperationDTO dto) {
+        WalletShard source = shards[shardOf(dto.getWalletId(), shards.length)];
+        if (dto.getOperationType() != OperationType.TRANSFER
+                || shardOf(dto.getTargetWalletId(), shards.length) == shardOf(dto.getWalletId(), shards.length)) {
+            WalletShard.Operation operation = new WalletShard.Operation(dto, new CompletableFuture<>());
+            source.submit(operation);
+            return join(operation.result());
+        }
+
+        WalletShard target = shards[shardOf(dto.getTargetWalletId(), shards.length)];
+        WalletShard.CrossShardTransfer transfer = new WalletShard.CrossShardTransfer(dto, source, target);
+        synchronized (crossShardLock) {
+            source.submit(transfer);
+            target.submit(transfer);
+        }
+        return join(transfer.result());
+    }
+
+    /**
+     * Возвращает зафиксированное состояние кошелька; кошелек, которого еще нет в памяти, загружается сегментом
+     */
+    public Wallet get(UUID walletId) {
+        Wallet wallet = published.get(walletId);
+        if (wallet != null) {
+            return WalletOperations.copyOf(wallet);
+        }
+        checkOpen();
+        WalletShard.Load load = new WalletShard.Load(walletId, new CompletableFuture<>());
+        shards[shardOf(walletId, shards.length)].submit(load);
+        return join(load.result());
+    }
+
+    /**
+     * Количество записей журнала, ожидающих переноса в PostgreSQL
+     */
+    public int syncLag() {
+        return synchronizer.lag();
+    }
+
+    /**
+     * Самое раннее время создания среди операций, еще не перенесенных в PostgreSQL
+     */
+    public Optional<Instant> oldestUnsynced() {
+        return synchronizer.oldestUnsynced();
+    }
+
+    /**
+     * Останавливает сегменты после обработки принятых операций, записывает снимки и дожидается переноса в PostgreSQL
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (WalletShard shard : shards) {
+            shard.stop();
+        }
+        synchronizer.close();
+    }
+
+    static int shardOf(UUID walletId, int shardCount) {
+        int hash = walletId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Движок кошельков остановлен");
+        }
+    }
+
+    private static Wallet join(CompletableFuture<Wallet> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Кошелек всегда обрабатывается одним сегментом, поэтому каталог, созданный с другим числом сегментов, не открывается
+     */
+    private static void checkShardCount(Path directory, int shardCount) {
+        Path meta = directory.resolve(META_FILE);
+        Properties properties = new Properties();
+        try {
+            Files.createDirectories(directory);
+            if (Files.exists(meta)) {
+                try (Reader reader = Files.newBufferedReader(meta)) {
+                    properties.load(reader);
+                }
+                int existing = Integer.parseInt(properties.getProperty("shards"));
+                if (existing != shardCount) {
+                    throw new IllegalStateException("Каталог " + directory + " создан для " + existing
+                            + " сегментов, настроено " + shardCount);
+                }
+                return;
+            }
+            properties.setProperty("shards", Integer.toString(shardCount));
+            try (Writer writer = Files.newBufferedWriter(meta)) {
+                properties.store(writer, null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package org.yakov.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.MinorUnits;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+import org.yakov.service.WalletLedger;
+import org.yakov.service.WalletOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сегмент движка: кошельки сегмента изменяет только его поток, поэтому операции выполняются без блокировок.
+ * Поток забирает из очереди все накопившиеся команды, применяет их к состоянию в памяти, записывает
+ * журнал одним сбросом на диск и только после этого публикует новое состояние и отвечает вызывающим.
+ */
+@Slf4j
+final class WalletShard {
+
+    private final int index;
+    private final int shardCount;
+    private final Path directory;
+    private final WalletStore store;
+    private final EngineSynchronizer synchronizer;
+    private final Map<UUID, Wallet> published;
+    private final Map<String, CompletableFuture<Wallet>> reservedKeys;
+    private final int maxBatchSize;
+    private final int snapshotEvery;
+    private final int keyCapacity;
+
+    private final BlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+    private final Map<UUID, Wallet> wallets = new HashMap<>();
+    private final LinkedHashMap<String, ShardSnapshot.KeyedResult> keys = new LinkedHashMap<>();
+    private final WriteAheadLog journal;
+    private final Thread thread;
+
+    private final List<LogRecord> pendingRecords = new ArrayList<>();
+    private final List<Completion> pendingCompletions = new ArrayList<>();
+    private final Set<UUID> changed = new HashSet<>();
+
+    private long lsn;
+    private long snapshotLsn;
+    private LogRecord lastRecord;
+    private volatile RuntimeException failure;
+    private volatile boolean running = true;
+
+    /**
+     * Восстанавливает состояние сегмента из снимка и журнала. Поток сегмента запускается методом {@link #start()}
+     */
+    WalletShard(int index, int shardCount, Path directory, WalletStore store, EngineSynchronizer synchronizer,
+                Map<UUID, Wallet> published, Map<String, CompletableFuture<Wallet>> reservedKeys, int maxBatchSize, int snapshotEvery, int keyCapacity, boolean fsync) {
+        this.index = index;
+        this.shardCount = shardCount;
+        this.directory = directory;
+        this.store = store;
+        this.synchronizer = synchronizer;
+        this.published = published;
+        this.reservedKeys = reservedKeys;
+        this.maxBatchSize = maxBatchSize;
+        this.snapshotEvery = snapshotEvery;
+        this.keyCapacity = keyCapacity;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ShardSnapshot snapshot = ShardSnapshot.read(directory);
+        snapshot.wallets().forEach(wallet -> wallets.put(wallet.getId(), wallet));
+        keys.putAll(snapshot.keys());
+        this.snapshotLsn = snapshot.lsn();
+
+        long syncedLsn = synchronizer.syncedLsn(index);
+        this.journal = new WriteAheadLog(directory, fsync);
+        // Если каталог движка утрачен, нумерация продолжается после перенесенных в БД записей
+        this.lsn = journal.recover(Math.max(snapshotLsn, syncedLsn), record -> {
+            if (record.lsn() > snapshotLsn) {
+                replay(record);
+            }
+            if (record.lsn() > syncedLsn) {
+                synchronizer.enqueue(index, record);
+            }
+            lastRecord = record;
+        });
+        wallets.values().forEach(wallet -> published.put(wallet.getId(), WalletOperations.copyOf(wallet)));
+        keys.forEach((key, result) -> reservedKeys.put(key, CompletableFuture.completedFuture(result.toWallet())));
+        this.thread = new Thread(this::run, "wallet-engine-shard-" + index);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void submit(Command command) {
+        queue.add(command);
+    }
+
+    /**
+     * Перевод между сегментами фиксируется сначала копией в журнале получателя, затем основной записью
+     * в журнале отправителя. Если при сбое сохранилась только копия, она последняя в журнале получателя:
+     * поток получателя ожидал завершения перевода. Такая копия отменяется отдельной записью.
+     *
+     * @param shards все сегменты после восстановления
+     */
+    void cancelUnconfirmedTransfer(WalletShard[] shards) {
+        if (lastRecord == null || !lastRecord.mirror() || lastRecord.originLsn() == 0
+                || shards[lastRecord.originShard()].lsn >= lastRecord.originLsn()) {
+            return;
+        }
+        List<WalletOperation> reversals = new ArrayList<>();
+        for (WalletOperation entry : lastRecord.entries()) {
+            Wallet wallet = wallets.get(entry.getWalletId());
+            if (!owns(entry.getWalletId()) || wallet == null) {
+                continue;
+            }
+            wallet.setBalanceMinor(MinorUnits.subtract(wallet.getBalanceMinor(), MinorUnits.of(entry.getAmount())));
+            wallet.setVersion(wallet.getVersion() + 1);
+            WalletOperation reversal = new WalletOperation();
+            reversal.setWalletId(wallet.getId());
+            reversal.setCounterpartyWalletId(entry.getCounterpartyWalletId());
+            reversal.setOperationType(OperationType.TRANSFER);
+            reversal.setAmount(entry.getAmount().negate());
+            reversal.setBalanceAfter(wallet.getBalance());
+            reversal.setWalletVersion(wallet.getVersion());
+            reversal.setCreatedAt(Instant.now());
+            reversals.add(reversal);
+            published.put(wallet.getId(), WalletOperations.copyOf(wallet));
+        }
+        log.warn("Сегмент {}: отменен незавершенный перевод между сегментами (запись {})", index, lastRecord.lsn());
+        LogRecord cancel = new LogRecord(++lsn, true, 0, 0, reversals);
+        journal.append(cancel);
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronizer.enqueue(index, cancel);
+    }
+
+    /**
+     * Останавливает поток после обработки поставленных команд и записывает снимок
+     */
+    void stop() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Команды, поставленные после остановки потока, не будут обработаны
+        IllegalStateException stopped = new IllegalStateException("Движок кошельков остановлен");
+        for (Command command; (command = queue.poll()) != null; ) {
+            if (command instanceof Operation operation) {
+                operation.result().completeExceptionally(stopped);
+            } else if (command instanceof Load load) {
+                load.result().completeExceptionally(stopped);
+            } else if (command instanceof CrossShardTransfer transfer) {
+                // Второй сегмент перевода не должен ждать этот сегмент на барьере
+                transfer.result().completeExceptionally(stopped);
+                transfer.arrived().countDown();
+                transfer.done().countDown();
+            }
+        }
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Command first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            for (Command command : batch) {
+                process(command);
+            }
+            commit();
+            batch.clear();
+        }
+        commit();
+        try {
+            if (failure == null && lsn > snapshotLsn) {
+                snapshot();
+            }
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Сегмент {}: не удалось закрыть журнал", index, e);
+        }
+    }
+
+    private void process(Command command) {
+        if (command instanceof Operation operation) {
+            if (failure != null) {
+                operation.result().completeExceptionally(failure);
+            } else {
+                apply(operation);
+            }
+        } else if (command instanceof Load load) {
+            load(load);
+        } else if (command instanceof CrossShardTransfer transfer) {
+            transfer(transfer);
+        }
+    }
+
+    /**
+     * Пополнение, снятие или перевод внутри сегмента
+     */
+    private void apply(Operation operation) {
+        WalletOperationDTO dto = operation.dto();
+        try {
+            ShardSnapshot.KeyedResult replay = dto.getIdempotencyKey() == null ? null : keys.get(dto.getIdempotencyKey());
+            if (replay != null) {
+                defer(operation.result(), replay.toWallet(), null);
+                return;
+            }
+            Wallet wallet = wallet(dto.getWalletId());
+            List<WalletOperation> entries;
+            if (dto.getOperationType() == OperationType.TRANSFER) {
+                Wallet target = wallet(dto.getTargetWalletId());
+                WalletOperations.transfer(wallet, target, dto.getAmount());
+                wallet.setVersion(wallet.getVersion() + 1);
+                target.setVersion(target.getVersion() + 1);
+                entries = WalletLedger.transferEntries(dto, wallet, target);
+                changed.add(target.getId());
+            } else {
+                WalletOperations.apply(wallet, dto.getOperationType(), dto.getAmount());
+                wallet.setVersion(wallet.getVersion() + 1);
+                entries = List.of(WalletLedger.entry(dto, wallet.getBalance(), wallet.getVersion()));
+            }
+            changed.add(wallet.getId());
+            append(LogRecord.of(++lsn, entries));
+            defer(operation.result(), WalletOperations.copyOf(wallet), null);
+        } catch (RuntimeException e) {
+            defer(operation.result(), null, e);
+        }
+    }
+
+    private void load(Load load) {
+        try {
+            load.result().complete(WalletOperations.copyOf(wallet(load.walletId())));
+        } catch (RuntimeException e) {
+            load.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Перевод между сегментами выполняет поток отправителя, пока поток получателя ожидает на барьере.
+     * Предыдущие операции обоих сегментов фиксируются до барьера
+     */
+    private void transfer(CrossShardTransfer transfer) {
+        commit();
+        transfer.arrived().countDown();
+        if (transfer.target() == this) {
+            awaitUninterruptibly(transfer.done());
+            return;
+        }
+        awaitUninterruptibly(transfer.arrived());
+        try {
+            transferAcrossShards(transfer);
+        } finally {
+            transfer.done().countDown();
+        }
+    }
+
+    private void transferAcrossShards(CrossShardTransfer transfer) {
+        WalletOperationDTO dto = transfer.dto();
+        WalletShard target = transfer.target();
+        if (transfer.result().isDone()) {
+            return;
+        }
+        try {
+            if (failure != null || target.failure != null) {
+                throw failure != null ? failure : target.failure;
+            }
+            ShardSnapshot.KeyedResult replay = dto.getIdempotencyKey() == null ? null : keys.get(dto.getIdempotencyKey());
+            if (replay != null) {
+                defer(transfer.result(), replay.toWallet(), null);
+                return;
+            }
+            Wallet source = wallet(dto.getWalletId());
+            Wallet credited = target.wallet(dto.getTargetWalletId());
+            Wallet sourceAfter = WalletOperations.copyOf(source);
+            Wallet creditedAfter = WalletOperations.copyOf(credited);
+            WalletOperations.transfer(sourceAfter, creditedAfter, dto.getAmount());
+            sourceAfter.setVersion(sourceAfter.getVersion() + 1);
+            creditedAfter.setVersion(creditedAfter.getVersion() + 1);
+            List<WalletOperation> entries = WalletLedger.transferEntries(dto, sourceAfter, creditedAfter);
+
+            // Копия в журнале получателя сбрасывается на диск раньше основной записи
+            long originLsn = lsn + 1;
+            target.mirror(new LogRecord(target.lsn + 1, true, index, originLsn, entries), creditedAfter);
+
+            lsn = originLsn;
+            source.setBalance(sourceAfter.getBalance());
+            source.setVersion(sourceAfter.getVersion());
+            changed.add(source.getId());
+            append(LogRecord.of(lsn, entries));
+            defer(transfer.result(), WalletOperations.copyOf(source), null);
+            commit();
+            if (failure != null) {
+                // Основная запись не сохранена: получатель останавливается, копия будет отменена при восстановлении
+                target.failure = failure;
+            }
+        } catch (RuntimeException e) {
+            transfer.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Записывает копию перевода и применяет зачисление. Вызывается потоком отправителя, пока поток сегмента ожидает на барьере
+     */
+    private void mirror(LogRecord record, Wallet creditedAfter) {
+        journal.append(record);
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            failure = new IllegalStateException("Журнал сегмента " + index + " недоступен", e);
+            throw failure;
+        }
+        lsn = record.lsn();
+        lastRecord = record;
+        Wallet wallet = wallets.get(creditedAfter.getId());
+        wallet.setBalance(creditedAfter.getBalance());
+        wallet.setVersion(creditedAfter.getVersion());
+        published.put(wallet.getId(), WalletOperations.copyOf(wallet));
+        synchronizer.enqueue(index, record);
+    }
+
+    /**
+     * Возвращает кошелек сегмента, при первом обращении загружая его из хранилища
+     */
+    private Wallet wallet(UUID walletId) {
+        Wallet wallet = wallets.get(walletId);
+        if (wallet == null) {
+            wallet = store.load(walletId).orElseThrow(() -> WalletOperations.walletNotFound(walletId));
+            wallets.put(walletId, wallet);
+            published.put(walletId, WalletOperations.copyOf(wallet));
+        }
+        return wallet;
+    }
+
+    private void append(LogRecord record) {
+        journal.append(record);
+        pendingRecords.add(record);
+        lastRecord = record;
+        for (WalletOperation entry : record.entries()) {
+            if (entry.getIdempotencyKey() != null) {
+                keys.put(entry.getIdempotencyKey(), new ShardSnapshot.KeyedResult(entry.getWalletId(),
+                        entry.getBalanceAfter(), entry.getWalletVersion(), record.lsn()));
+            }
+        }
+        // Из памяти удаляются только ключи операций, уже перенесенных в БД
+        long syncedLsn = synchronizer.syncedLsn(index);
+        Iterator<Map.Entry<String, ShardSnapshot.KeyedResult>> eldest = keys.entrySet().iterator();
+        while (keys.size() > keyCapacity && eldest.hasNext()) {
+            Map.Entry<String, ShardSnapshot.KeyedResult> key = eldest.next();
+            if (key.getValue().lsn() > syncedLsn) {
+                break;
+            }
+            eldest.remove();
+            reservedKeys.remove(key.getKey());
+        }
+    }
+
+    private void defer(CompletableFuture<Wallet> result, Wallet wallet, RuntimeException error) {
+        pendingCompletions.add(new Completion(result, wallet, error));
+    }
+
+    /**
+     * Сбрасывает журнал на диск, публикует состояние и отвечает вызывающим
+     */
+    private void commit() {
+        if (pendingCompletions.isEmpty() && pendingRecords.isEmpty()) {
+            return;
+        }
+        if (failure == null) {
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                failure = new IllegalStateException("Журнал сегмента " + index + " недоступен", e);
+                log.error("Сегмент {} остановлен: не удалось записать журнал", index, e);
+            }
+        }
+        if (failure != null) {
+            // Состояние в памяти опережает журнал: изменения не публикуются, вызывающие получают ошибку
+            pendingCompletions.forEach(completion -> completion.result().completeExceptionally(failure));
+            pendingCompletions.clear();
+            pendingRecords.clear();
+            changed.clear();
+            return;
+        }
+
+        for (UUID walletId : changed) {
+            published.put(walletId, WalletOperations.copyOf(wallets.get(walletId)));
+        }
+        changed.clear();
+        pendingRecords.forEach(record -> synchronizer.enqueue(index, record));
+        pendingRecords.clear();
+        for (Completion completion : pendingCompletions) {
+            if (completion.error() != null) {
+                completion.result().completeExceptionally(completion.error());
+            } else {
+                completion.result().complete(completion.wallet());
+            }
+        }
+        pendingCompletions.clear();
+
+        if (lsn - snapshotLsn >= snapshotEvery) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                log.warn("Сегмент {}: не удалось записать снимок", index, e);
+            }
+        }
+    }
+
+    /**
+     * Записывает снимок и удаляет файлы журнала, учтенные в снимке и перенесенные в БД
+     */
+    private void snapshot() throws IOException {
+        journal.roll(lsn + 1);
+        new ShardSnapshot(lsn, wallets.values(), keys).write(directory);
+        snapshotLsn = lsn;
+        journal.deleteUpTo(Math.min(snapshotLsn, synchronizer.syncedLsn(index)));
+    }
+
+    /**
+     * Применяет запись журнала при восстановлении. Записи о чужих кошельках (вторая сторона перевода) пропускаются
+     */
+    private void replay(LogRecord record) {
+        for (WalletOperation entry : record.entries()) {
+            if (!owns(entry.getWalletId())) {
+                continue;
+            }
+            Wallet wallet = wallets.get(entry.getWalletId());
+            if (wallet == null) {
+                wallet = new Wallet();
+                wallet.setId(entry.getWalletId());
+                wallet.setVersion(Long.MIN_VALUE);
+                wallets.put(wallet.getId(), wallet);
+            }
+            if (entry.getWalletVersion() > wallet.getVersion()) {
+                wallet.setBalance(entry.getBalanceAfter());
+                wallet.setVersion(entry.getWalletVersion());
+            }
+            if (entry.getIdempotencyKey() != null) {
+                keys.put(entry.getIdempotencyKey(), new ShardSnapshot.KeyedResult(entry.getWalletId(),
+                        entry.getBalanceAfter(), entry.getWalletVersion(), record.lsn()));
+            }
+        }
+    }
+
+    private boolean owns(UUID walletId) {
+        return WalletEngine.shardOf(walletId, shardCount) == index;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    interface Command {
+    }
+
+    record Operation(WalletOperationDTO dto, CompletableFuture<Wallet> result) implements Command {
+    }
+
+    record Load(UUID walletId, CompletableFuture<Wallet> result) implements Command {
+    }
+
+    /**
+     * Барьер перевода между сегментами: команда ставится в очереди обоих сегментов
+     */
+    record CrossShardTransfer(WalletOperationDTO dto, CompletableFuture<Wallet> result, WalletShard source,
+                              WalletShard target, CountDownLatch arrived, CountDownLatch done) implements Command {
+
+        CrossShardTransfer(WalletOperationDTO dto, WalletShard source, WalletShard target) {
+            this(dto, new CompletableFuture<>(), source, target, new CountDownLatch(2), new CountDownLatch(1));
+        }
+    }
+
+    private record Completion(CompletableFuture<Wallet> result, Wallet wallet, RuntimeException error) {
+    }
+}
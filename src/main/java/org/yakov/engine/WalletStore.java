@@ -0,0 +1,35 @@
+package org.yakov.engine;
+
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Постоянное хранилище, в которое {@link WalletEngine} переносит изменения из журнала предзаписи
+ */
+public interface WalletStore {
+
+    /**
+     * Загружает кошелек, еще не известный движку
+     */
+    Optional<Wallet> load(UUID walletId);
+
+    /**
+     * Номер последней записи журнала сегмента, перенесенной в хранилище, или 0
+     */
+    long syncedLsn(int shard);
+
+    /**
+     * Переносит изменения в одной транзакции
+     *
+     * @param entries    записи журнала операций
+     * @param wallets    состояние измененных кошельков; кошелек с версией не больше сохраненной не изменяется
+     * @param syncedLsns номер последней перенесенной записи по сегментам
+     */
+    void write(List<WalletOperation> entries, Collection<Wallet> wallets, Map<Integer, Long> syncedLsns);
+}
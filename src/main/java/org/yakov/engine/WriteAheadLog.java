@@ -0,0 +1,299 @@
+package org.yakov.engine;
+
+import org.yakov.model.OperationType;
+import org.yakov.model.WalletOperation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал предзаписи сегмента. Журнал состоит из файлов wal-{первый lsn}.log; записи добавляются в буфер
+ * и записываются в файл одним вызовом при сбросе, поэтому все операции пакета фиксируются одним fsync.
+ * Формат записи: длина, CRC32 и содержимое. Запись с неполной длиной или неверной суммой в конце
+ * последнего файла считается оборванной при сбое и отбрасывается при восстановлении.
+ * Не потокобезопасен: используется только потоком сегмента.
+ */
+final class WriteAheadLog implements AutoCloseable {
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Запись не может быть длиннее: большая длина означает оборванный заголовок
+     */
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream bufferOutput = new DataOutputStream(buffer);
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+    private final DataOutputStream payloadOutput = new DataOutputStream(payload);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+
+    WriteAheadLog(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Читает все записи журнала по порядку и открывает последний файл для добавления.
+     * Оборванная запись в конце последнего файла отбрасывается.
+     *
+     * @param snapshotLsn номер записи, на котором сделан последний снимок; новый журнал начинается со следующей
+     * @return номер последней прочитанной записи или snapshotLsn для пустого журнала
+     */
+    long recover(long snapshotLsn, Consumer<LogRecord> consumer) {
+        List<Path> segments = segments();
+        long lastLsn = snapshotLsn;
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            long validLength = 0;
+            try (DataInputStream input = new DataInputStream(Files.newInputStream(segment))) {
+                while (true) {
+                    Frame frame = read(input);
+                    if (frame == null) {
+                        break;
+                    }
+                    consumer.accept(frame.record());
+                    lastLsn = Math.max(lastLsn, frame.record().lsn());
+                    validLength += frame.length();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                if (validLength < Files.size(segment)) {
+                    if (!last) {
+                        throw new IllegalStateException("Поврежден файл журнала " + segment);
+                    }
+                    try (FileChannel truncated = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                        truncated.truncate(validLength);
+                        truncated.force(true);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        try {
+            Path current = segments.isEmpty() ? segmentPath(lastLsn + 1) : segments.get(segments.size() - 1);
+            channel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Добавляет запись в буфер; на диск она попадает при {@link #flush()}
+     */
+    void append(LogRecord record) {
+        try {
+            payload.reset();
+            write(payloadOutput, record);
+            crc.reset();
+            crc.update(payload.toByteArray());
+            bufferOutput.writeInt(payload.size());
+            bufferOutput.writeInt((int) crc.getValue());
+            payload.writeTo(bufferOutput);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Записывает буфер в файл и сбрасывает файл на диск
+     */
+    void flush() throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        buffer.reset();
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Начинает новый файл журнала с указанного номера записи. Буфер должен быть сброшен
+     */
+    void roll(long nextLsn) throws IOException {
+        flush();
+        channel.force(true);
+        channel.close();
+        channel = FileChannel.open(segmentPath(nextLsn), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Удаляет файлы, все записи которых имеют номер не больше указанного
+     */
+    void deleteUpTo(long lsn) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) - 1 <= lsn) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted((a, b) -> Long.compare(firstLsn(a), firstLsn(b)))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, firstLsn, SUFFIX));
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private Frame read(DataInputStream input) throws IOException {
+        int length;
+        int checksum;
+        byte[] bytes;
+        try {
+            length = input.readInt();
+            checksum = input.readInt();
+            if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                return null;
+            }
+            bytes = input.readNBytes(length);
+        } catch (EOFException e) {
+            return null;
+        }
+        if (bytes.length < length) {
+            return null;
+        }
+        crc.reset();
+        crc.update(bytes);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        return new Frame(decode(new DataInputStream(new ByteArrayInputStream(bytes))), Integer.BYTES * 2 + length);
+    }
+
+    static void write(DataOutputStream output, LogRecord record) throws IOException {
+        output.writeLong(record.lsn());
+        output.writeBoolean(record.mirror());
+        output.writeInt(record.originShard());
+        output.writeLong(record.originLsn());
+        output.writeShort(record.entries().size());
+        for (WalletOperation entry : record.entries()) {
+            writeUuid(output, entry.getWalletId());
+            output.writeBoolean(entry.getCounterpartyWalletId() != null);
+            if (entry.getCounterpartyWalletId() != null) {
+                writeUuid(output, entry.getCounterpartyWalletId());
+            }
+            output.writeByte(entry.getOperationType().ordinal());
+            writeDecimal(output, entry.getAmount());
+            writeDecimal(output, entry.getBalanceAfter());
+            output.writeLong(entry.getWalletVersion());
+            output.writeBoolean(entry.getIdempotencyKey() != null);
+            if (entry.getIdempotencyKey() != null) {
+                output.writeUTF(entry.getIdempotencyKey());
+            }
+            output.writeLong(entry.getCreatedAt().getEpochSecond());
+            output.writeInt(entry.getCreatedAt().getNano());
+        }
+    }
+
+    static LogRecord decode(DataInputStream input) throws IOException {
+        long lsn = input.readLong();
+        boolean mirror = input.readBoolean();
+        int originShard = input.readInt();
+        long originLsn = input.readLong();
+        int count = input.readUnsignedShort();
+        List<WalletOperation> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WalletOperation entry = new WalletOperation();
+            entry.setWalletId(readUuid(input));
+            if (input.readBoolean()) {
+                entry.setCounterpartyWalletId(readUuid(input));
+            }
+            entry.setOperationType(OperationType.values()[input.readUnsignedByte()]);
+            entry.setAmount(readDecimal(input));
+            entry.setBalanceAfter(readDecimal(input));
+            entry.setWalletVersion(input.readLong());
+            if (input.readBoolean()) {
+                entry.setIdempotencyKey(input.readUTF());
+            }
+            entry.setCreatedAt(Instant.ofEpochSecond(input.readLong(), input.readInt()));
+            entries.add(entry);
+        }
+        return new LogRecord(lsn, mirror, originShard, originLsn, entries);
+    }
+
+    static void writeUuid(DataOutputStream output, UUID uuid) throws IOException {
+        output.writeLong(uuid.getMostSignificantBits());
+        output.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInputStream input) throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    static void writeDecimal(DataOutputStream output, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        output.writeInt(value.scale());
+        output.writeShort(unscaled.length);
+        output.write(unscaled);
+    }
+
+    static BigDecimal readDecimal(DataInputStream input) throws IOException {
+        int scale = input.readInt();
+        byte[] unscaled = new byte[input.readUnsignedShort()];
+        input.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    /**
+     * Прочитанная запись и ее длина в файле вместе с заголовком
+     */
+    private record Frame(LogRecord record, int length) {
+    }
+}
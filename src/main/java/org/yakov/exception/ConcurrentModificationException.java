@@ -1,6 +1,6 @@
 package org.yakov.exception;
 
-public class ConcurrentModificationException extends RuntimeException {
+public class ConcurrentModificationException extends WalletApiException {
     public ConcurrentModificationException(String message) {
         super(message);
     }
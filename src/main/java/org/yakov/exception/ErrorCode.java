@@ -0,0 +1,50 @@
+package org.yakov.exception;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Коды ошибок API и соответствующие им HTTP-статусы
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ErrorCode {
+    WALLET_NOT_FOUND(HttpStatus.NOT_FOUND),
+    OPERATION_NOT_FOUND(HttpStatus.NOT_FOUND),
+    INSUFFICIENT_FUNDS(HttpStatus.BAD_REQUEST),
+    INVALID_OPERATION_TYPE(HttpStatus.BAD_REQUEST),
+    CONCURRENT_MODIFICATION(HttpStatus.CONFLICT),
+    INVALID_JSON(HttpStatus.BAD_REQUEST),
+    INVALID_BINARY(HttpStatus.BAD_REQUEST),
+    VALIDATION_ERROR(HttpStatus.BAD_REQUEST),
+    BATCH_ABORTED(HttpStatus.CONFLICT),
+    SERVICE_OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE),
+    INTERNAL_SERVER_ERROR(HttpStatus.INTERNAL_SERVER_ERROR);
+
+    private final HttpStatus status;
+
+    /**
+     * Определяет код ошибки для доменного исключения
+     */
+    public static ErrorCode of(Throwable ex) {
+        if (ex instanceof WalletNotFoundException) {
+            return WALLET_NOT_FOUND;
+        } else if (ex instanceof OperationNotFoundException) {
+            return OPERATION_NOT_FOUND;
+        } else if (ex instanceof InsufficientFundsException) {
+            return INSUFFICIENT_FUNDS;
+        } else if (ex instanceof InvalidOperationTypeException) {
+            return INVALID_OPERATION_TYPE;
+        } else if (ex instanceof ConcurrentModificationException) {
+            return CONCURRENT_MODIFICATION;
+        } else if (ex instanceof MalformedRequestException) {
+            return INVALID_BINARY;
+        } else if (ex instanceof RequestValidationException) {
+            return VALIDATION_ERROR;
+        } else if (ex instanceof ServiceOverloadedException) {
+            return SERVICE_OVERLOADED;
+        }
+        return INTERNAL_SERVER_ERROR;
+    }
+}
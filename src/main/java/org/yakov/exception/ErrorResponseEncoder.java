@@ -0,0 +1,157 @@
+package org.yakov.exception;
+
+import org.yakov.exception.model.ErrorResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Кодирует тело ошибки в JSON с полями {@link ErrorResponse} без Jackson: начало тела с кодом ошибки
+ * и части между полями закодированы заранее, метка времени кодируется не чаще раза в секунду.
+ * Сообщение и путь записываются сразу в массив ответа, размер которого вычисляется заранее.
+ */
+public final class ErrorResponseEncoder {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final byte[] TIMESTAMP_FIELD = ascii("\",\"timestamp\":\"");
+    private static final byte[] PATH_FIELD = ascii(",\"path\":\"");
+    private static final byte[] END = ascii("\"}");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private final Map<ErrorCode, byte[]> prefixes = new EnumMap<>(ErrorCode.class);
+    private final Map<ErrorCode, byte[]> statuses = new EnumMap<>(ErrorCode.class);
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, null);
+
+    public ErrorResponseEncoder() {
+        for (ErrorCode code : ErrorCode.values()) {
+            prefixes.put(code, ascii("{\"errorCode\":\"" + code.name() + "\",\"message\":\""));
+            statuses.put(code, ascii("\",\"status\":" + code.getStatus().value()));
+        }
+    }
+
+    /**
+     * @param message сообщение или начало сообщения
+     * @param detail  продолжение сообщения или null
+     */
+    public byte[] encode(ErrorCode code, String message, String detail, String path) {
+        byte[] prefix = prefixes.get(code);
+        byte[] status = statuses.get(code);
+        byte[] time = currentTimestamp();
+        int detailLength = detail == null ? 0 : escapedLength(detail);
+        byte[] body = new byte[prefix.length + escapedLength(message) + detailLength + TIMESTAMP_FIELD.length
+                + time.length + status.length + PATH_FIELD.length + escapedLength(path) + END.length];
+
+        int offset = copy(prefix, body, 0);
+        offset = writeEscaped(message, body, offset);
+        if (detail != null) {
+            offset = writeEscaped(detail, body, offset);
+        }
+        offset = copy(TIMESTAMP_FIELD, body, offset);
+        offset = copy(time, body, offset);
+        offset = copy(status, body, offset);
+        offset = copy(PATH_FIELD, body, offset);
+        offset = writeEscaped(path, body, offset);
+        copy(END, body, offset);
+        return body;
+    }
+
+    private byte[] currentTimestamp() {
+        long second = System.currentTimeMillis() / 1000;
+        Timestamp current = timestamp;
+        if (current.second() != second) {
+            Instant instant = Instant.ofEpochSecond(second);
+            current = new Timestamp(second, ascii(TIMESTAMP_FORMAT.format(LocalDateTime.ofInstant(instant, zone))));
+            timestamp = current;
+        }
+        return current.bytes();
+    }
+
+    private static int copy(byte[] source, byte[] target, int offset) {
+        System.arraycopy(source, 0, target, offset, source.length);
+        return offset + source.length;
+    }
+
+    /**
+     * Длина строки в UTF-8 после экранирования по правилам JSON
+     */
+    private static int escapedLength(String value) {
+        int length = 0;
+        int size = value.length();
+        for (int i = 0; i < size; i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                length += 2;
+            } else if (ch < 0x20) {
+                length += 6;
+            } else if (ch < 0x80) {
+                length += 1;
+            } else if (ch < 0x800) {
+                length += 2;
+            } else if (isSurrogatePair(value, i)) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int writeEscaped(String value, byte[] target, int offset) {
+        int size = value.length();
+        for (int i = 0; i < size; i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                target[offset++] = '\\';
+                target[offset++] = (byte) ch;
+            } else if (ch < 0x20) {
+                target[offset++] = '\\';
+                target[offset++] = 'u';
+                target[offset++] = '0';
+                target[offset++] = '0';
+                target[offset++] = HEX[ch >> 4];
+                target[offset++] = HEX[ch & 0xF];
+            } else if (ch < 0x80) {
+                target[offset++] = (byte) ch;
+            } else if (ch < 0x800) {
+                target[offset++] = (byte) (0xC0 | ch >> 6);
+                target[offset++] = (byte) (0x80 | ch & 0x3F);
+            } else if (isSurrogatePair(value, i)) {
+                int codePoint = Character.toCodePoint(ch, value.charAt(++i));
+                target[offset++] = (byte) (0xF0 | codePoint >> 18);
+                target[offset++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                target[offset++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                target[offset++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(ch)) {
+                target[offset++] = '?';
+            } else {
+                target[offset++] = (byte) (0xE0 | ch >> 12);
+                target[offset++] = (byte) (0x80 | ch >> 6 & 0x3F);
+                target[offset++] = (byte) (0x80 | ch & 0x3F);
+            }
+        }
+        return offset;
+    }
+
+    private static boolean isSurrogatePair(String value, int index) {
+        return Character.isHighSurrogate(value.charAt(index))
+                && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private record Timestamp(long second, byte[] bytes) {
+    }
+}
@@ -1,121 +1,110 @@
 package org.yakov.exception;
 
 import jakarta.validation.ConstraintViolationException;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
 import org.yakov.exception.model.ErrorResponse;
 
-import java.time.LocalDateTime;
-
+/**
+ * Ответы об ошибках в формате {@link ErrorResponse}, закодированные {@link ErrorResponseEncoder}
+ */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final HttpHeaders JSON_HEADERS;
+
+    static {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        JSON_HEADERS = HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    private final ErrorResponseEncoder encoder = new ErrorResponseEncoder();
+
     @ExceptionHandler(WalletNotFoundException.class)
-    public ResponseEntity<ErrorResponse> handleWalletNotFoundException(WalletNotFoundException ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.NOT_FOUND.value())
-                .errorCode("WALLET_NOT_FOUND")
-                .message(ex.getMessage())
-                .path(request.getDescription(false).substring(4))
-                .build();
+    public ResponseEntity<byte[]> handleWalletNotFoundException(WalletNotFoundException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.WALLET_NOT_FOUND, ex.getMessage(), request);
+    }
 
-        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    @ExceptionHandler(OperationNotFoundException.class)
+    public ResponseEntity<byte[]> handleOperationNotFoundException(OperationNotFoundException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.OPERATION_NOT_FOUND, ex.getMessage(), request);
     }
 
     @ExceptionHandler(InsufficientFundsException.class)
-    public ResponseEntity<ErrorResponse> handleInsufficientFundsException(InsufficientFundsException ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.BAD_REQUEST.value())
-                .errorCode("INSUFFICIENT_FUNDS")
-                .message(ex.getMessage())
-                .path(request.getDescription(false).substring(4))
-                .build();
-
-        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    public ResponseEntity<byte[]> handleInsufficientFundsException(InsufficientFundsException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.INSUFFICIENT_FUNDS, ex.getMessage(), request);
     }
 
     @ExceptionHandler(InvalidOperationTypeException.class)
-    public ResponseEntity<ErrorResponse> handleInvalidOperationTypeException(InvalidOperationTypeException ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.BAD_REQUEST.value())
-                .errorCode("INVALID_OPERATION_TYPE")
-                .message(ex.getMessage())
-                .path(request.getDescription(false).substring(4))
-                .build();
-
-        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    public ResponseEntity<byte[]> handleInvalidOperationTypeException(InvalidOperationTypeException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.INVALID_OPERATION_TYPE, ex.getMessage(), request);
     }
 
     @ExceptionHandler(ConcurrentModificationException.class)
-    public ResponseEntity<ErrorResponse> handleConcurrentModificationException(ConcurrentModificationException ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.CONFLICT.value())
-                .errorCode("CONCURRENT_MODIFICATION")
-                .message(ex.getMessage())
-                .path(request.getDescription(false).substring(4))
-                .build();
+    public ResponseEntity<byte[]> handleConcurrentModificationException(ConcurrentModificationException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.CONCURRENT_MODIFICATION, ex.getMessage(), request);
+    }
 
-        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<byte[]> handleServiceOverloadedException(ServiceOverloadedException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.SERVICE_OVERLOADED, ex.getMessage(), request);
     }
 
     @ExceptionHandler(HttpMessageNotReadableException.class)
-    public ResponseEntity<ErrorResponse> handleHttpMessageNotReadableException(HttpMessageNotReadableException ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.BAD_REQUEST.value())
-                .errorCode("INVALID_JSON")
-                .message("Некорректный формат JSON запроса")
-                .path(request.getDescription(false).substring(4))
-                .build();
+    public ResponseEntity<byte[]> handleHttpMessageNotReadableException(HttpMessageNotReadableException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.INVALID_JSON, "Некорректный формат JSON запроса", request);
+    }
 
-        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    @ExceptionHandler(MalformedRequestException.class)
+    public ResponseEntity<byte[]> handleMalformedRequestException(MalformedRequestException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.INVALID_BINARY, "Некорректный формат двоичного запроса: ", ex.getMessage(), request);
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
-    public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.BAD_REQUEST.value())
-                .errorCode("VALIDATION_ERROR")
-                .message("Ошибка валидации запроса: " + ex.getBindingResult().getFieldError().getDefaultMessage())
-                .path(request.getDescription(false).substring(4))
-                .build();
+    public ResponseEntity<byte[]> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.VALIDATION_ERROR,
+                "Ошибка валидации запроса: ", ex.getBindingResult().getFieldError().getDefaultMessage(), request);
+    }
 
-        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    @ExceptionHandler(RequestValidationException.class)
+    public ResponseEntity<byte[]> handleRequestValidationException(RequestValidationException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.VALIDATION_ERROR, "Ошибка валидации запроса: ", ex.getMessage(), request);
     }
 
     @ExceptionHandler(ConstraintViolationException.class)
-    public ResponseEntity<ErrorResponse> handleConstraintViolationException(ConstraintViolationException ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.BAD_REQUEST.value())
-                .errorCode("VALIDATION_ERROR")
-                .message("Ошибка валидации: " + ex.getMessage())
-                .path(request.getDescription(false).substring(4))
-                .build();
-
-        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    public ResponseEntity<byte[]> handleConstraintViolationException(ConstraintViolationException ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.VALIDATION_ERROR, "Ошибка валидации: ", ex.getMessage(), request);
     }
 
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<ErrorResponse> handleGlobalException(Exception ex, WebRequest request) {
-        ErrorResponse errorResponse = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(HttpStatus.INTERNAL_SERVER_ERROR.value())
-                .errorCode("INTERNAL_SERVER_ERROR")
-                .message("Внутренняя ошибка сервера")
-                .path(request.getDescription(false).substring(4))
-                .build();
-
-        return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+    public ResponseEntity<byte[]> handleGlobalException(Exception ex, WebRequest request) {
+        return buildErrorResponse(ErrorCode.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", request);
+    }
+
+    private ResponseEntity<byte[]> buildErrorResponse(ErrorCode errorCode, String message, WebRequest request) {
+        return encodeErrorResponse(errorCode, message, null, request);
+    }
+
+    private ResponseEntity<byte[]> buildErrorResponse(ErrorCode errorCode, String message, String detail, WebRequest request) {
+        return encodeErrorResponse(errorCode, message, String.valueOf(detail), request);
+    }
+
+    /**
+     * Тело кодируется без промежуточного {@link ErrorResponse}, сообщение передается частями без склеивания строк.
+     * Ошибка всегда в JSON, в том числе для запросов в двоичном формате
+     */
+    private ResponseEntity<byte[]> encodeErrorResponse(ErrorCode errorCode, String message, String detail, WebRequest request) {
+        String path = request instanceof ServletWebRequest servletRequest
+                ? servletRequest.getRequest().getRequestURI()
+                : request.getDescription(false).substring(4);
+        return new ResponseEntity<>(encoder.encode(errorCode, message, detail, path), JSON_HEADERS, errorCode.getStatus());
     }
 }
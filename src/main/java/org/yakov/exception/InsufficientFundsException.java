@@ -1,6 +1,6 @@
 package org.yakov.exception;
 
-public class InsufficientFundsException extends RuntimeException {
+public class InsufficientFundsException extends WalletApiException {
     public InsufficientFundsException(String message) {
         super(message);
     }
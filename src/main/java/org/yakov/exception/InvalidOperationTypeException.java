@@ -1,6 +1,6 @@
 package org.yakov.exception;
 
-public class InvalidOperationTypeException extends RuntimeException {
+public class InvalidOperationTypeException extends WalletApiException {
     public InvalidOperationTypeException(String message) {
         super(message);
     }
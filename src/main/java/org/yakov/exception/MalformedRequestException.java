@@ -0,0 +1,10 @@
+package org.yakov.exception;
+
+/**
+ * Тело запроса не соответствует двоичному формату
+ */
+public class MalformedRequestException extends WalletApiException {
+    public MalformedRequestException(String message) {
+        super(message);
+    }
+}
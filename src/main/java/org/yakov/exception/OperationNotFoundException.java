@@ -0,0 +1,7 @@
+package org.yakov.exception;
+
+public class OperationNotFoundException extends WalletApiException {
+    public OperationNotFoundException(String message) {
+        super(message);
+    }
+}
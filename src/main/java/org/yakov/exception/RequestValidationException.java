@@ -0,0 +1,7 @@
+package org.yakov.exception;
+
+public class RequestValidationException extends WalletApiException {
+    public RequestValidationException(String message) {
+        super(message);
+    }
+}
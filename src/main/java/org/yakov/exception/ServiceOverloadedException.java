@@ -0,0 +1,7 @@
+package org.yakov.exception;
+
+public class ServiceOverloadedException extends WalletApiException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
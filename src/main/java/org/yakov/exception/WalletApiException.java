@@ -0,0 +1,12 @@
+package org.yakov.exception;
+
+/**
+ * Ожидаемая ошибка API, которая преобразуется в ответ с кодом {@link ErrorCode}.
+ * Стек вызовов не заполняется: место возникновения таких ошибок не нужно для диагностики,
+ * а при исчерпании баланса или конфликтах на популярном кошельке ошибкой завершается большинство запросов
+ */
+public abstract class WalletApiException extends RuntimeException {
+    protected WalletApiException(String message) {
+        super(message, null, false, false);
+    }
+}
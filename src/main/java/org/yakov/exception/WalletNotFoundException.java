@@ -1,6 +1,6 @@
 package org.yakov.exception;
 
-public class WalletNotFoundException extends RuntimeException {
+public class WalletNotFoundException extends WalletApiException {
     public WalletNotFoundException(String message) {
         super(message);
     }
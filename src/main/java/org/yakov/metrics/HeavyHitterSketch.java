@@ -0,0 +1,138 @@
+package org.yakov.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Приближенный подсчет частоты событий по кошелькам в фиксированном объеме памяти.
+ * Частота оценивается count-min sketch (оценка не меньше истинной), а кандидаты в самые частые кошельки
+ * хранятся в таблице с ассоциативностью {@link #WAYS}: новый кошелек вытесняет из своей группы кандидата
+ * с наименьшей оценкой, если его собственная оценка больше. Все обновления выполняются атомарными операциями без блокировок.
+ */
+final class HeavyHitterSketch {
+
+    private static final int DEPTH = 4;
+    private static final int WAYS = 4;
+    private static final long[] ROW_SEEDS = {
+            0x9E3779B97F4A7C15L, 0xBF58476D1CE4E5B9L, 0x94D049BB133111EBL, 0xD6E8FEB86659FD93L};
+
+    private final AtomicLongArray counters;
+    private final int widthMask;
+    private final int width;
+    private final AtomicReferenceArray<UUID> candidates;
+    private final int groupMask;
+
+    HeavyHitterSketch(int width, int candidates) {
+        this.width = powerOfTwo(width);
+        this.widthMask = this.width - 1;
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+        int size = Math.max(WAYS, powerOfTwo(candidates));
+        this.candidates = new AtomicReferenceArray<>(size);
+        this.groupMask = size / WAYS - 1;
+    }
+
+    void add(UUID walletId) {
+        long hash = hash(walletId);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(cell(hash, row)));
+        }
+        offer(walletId, hash, estimate);
+    }
+
+    long estimate(UUID walletId) {
+        long hash = hash(walletId);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(cell(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Индекс счетчика строки. Хеш перемешивается отдельно для каждой строки: при двойном хешировании (h1 + row * h2)
+     * кошелек, у которого h1 и h2 совпали с h1 и h2 частого кошелька, совпадал с ним во всех строках
+     */
+    private int cell(long hash, int row) {
+        return row * width + ((int) mix(hash + ROW_SEEDS[row]) & widthMask);
+    }
+
+    /**
+     * Уменьшает все счетчики вдвое. Выполняется параллельно с записью: инкремент,
+     * пришедшийся на время уменьшения, может быть учтен до или после деления
+     */
+    void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value;
+            do {
+                value = counters.get(i);
+            } while (value != 0 && !counters.compareAndSet(i, value, value >>> 1));
+        }
+    }
+
+    /**
+     * Текущие кандидаты с оценкой частоты; кошельки с нулевой оценкой не возвращаются
+     */
+    Map<UUID, Long> snapshot() {
+        Map<UUID, Long> result = new HashMap<>();
+        for (int i = 0; i < candidates.length(); i++) {
+            UUID walletId = candidates.get(i);
+            if (walletId != null) {
+                long estimate = estimate(walletId);
+                if (estimate > 0) {
+                    // При гонке вставки кошелек может занять два места в группе, повтор отбрасывается
+                    result.put(walletId, estimate);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void offer(UUID walletId, long hash, long estimate) {
+        int start = ((int) (hash >>> 17) & groupMask) * WAYS;
+        for (int i = start; i < start + WAYS; i++) {
+            UUID current = candidates.get(i);
+            if (current == null && candidates.compareAndSet(i, null, walletId)) {
+                return;
+            }
+            if (walletId.equals(candidates.get(i))) {
+                return;
+            }
+        }
+
+        // Группа заполнена другими кошельками: вытесняется кандидат с наименьшей оценкой
+        int victim = -1;
+        UUID victimId = null;
+        long victimEstimate = Long.MAX_VALUE;
+        for (int i = start; i < start + WAYS; i++) {
+            UUID current = candidates.get(i);
+            long currentEstimate = estimate(current);
+            if (currentEstimate < victimEstimate) {
+                victim = i;
+                victimId = current;
+                victimEstimate = currentEstimate;
+            }
+        }
+        if (victimEstimate < estimate) {
+            // Если место уже занял другой кошелек, вытеснение пропускается до следующего события
+            candidates.compareAndSet(victim, victimId, walletId);
+        }
+    }
+
+    private static long hash(UUID walletId) {
+        return mix(walletId.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ walletId.getLeastSignificantBits());
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
@@ -0,0 +1,105 @@
+package org.yakov.metrics;
+
+import org.springframework.stereotype.Component;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.HotWalletDTO;
+import org.yakov.dto.HotWalletsDTO;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Учет самых нагруженных кошельков по числу операций и конфликтов параллельного изменения.
+ * Объем памяти фиксирован и не зависит от числа кошельков, запись выполняется без блокировок.
+ * Счетчики периодически уменьшаются вдвое, поэтому рейтинг отражает нагрузку за последние несколько интервалов,
+ * а интенсивность рассчитывается по окну, затухающему так же, как счетчики.
+ */
+@Component
+public class HotWalletTracker {
+
+    private final HeavyHitterSketch operations;
+    private final HeavyHitterSketch conflicts;
+    private final long decayIntervalNanos;
+    private final int defaultLimit;
+
+    private final AtomicLong lastDecay = new AtomicLong(System.nanoTime());
+    private volatile long decayedWindowNanos;
+
+    public HotWalletTracker(WalletProperties properties) {
+        WalletProperties.HotWallets hotWallets = properties.getHotWallets();
+        this.operations = hotWallets.isEnabled()
+                ? new HeavyHitterSketch(hotWallets.getSketchWidth(), hotWallets.getCandidates()) : null;
+        this.conflicts = hotWallets.isEnabled()
+                ? new HeavyHitterSketch(hotWallets.getSketchWidth(), hotWallets.getCandidates()) : null;
+        this.decayIntervalNanos = hotWallets.getDecayInterval().toNanos();
+        this.defaultLimit = hotWallets.getDefaultLimit();
+    }
+
+    public void operation(UUID walletId) {
+        if (operations != null) {
+            decayIfDue();
+            operations.add(walletId);
+        }
+    }
+
+    public void conflict(UUID walletId) {
+        if (conflicts != null) {
+            decayIfDue();
+            conflicts.add(walletId);
+        }
+    }
+
+    /**
+     * Самые нагруженные кошельки
+     *
+     * @param limit количество кошельков в каждом списке или null для значения по умолчанию
+     */
+    public HotWalletsDTO top(Integer limit) {
+        int size = limit == null || limit <= 0 ? defaultLimit : limit;
+        double windowSeconds = windowNanos() / 1e9;
+        return new HotWalletsDTO(windowSeconds, top(operations, size, windowSeconds), top(conflicts, size, windowSeconds));
+    }
+
+    /**
+     * Кошельки с наибольшим числом конфликтов и оценкой их числа, по убыванию
+     */
+    public Map<UUID, Long> topConflicts(int limit) {
+        Map<UUID, Long> result = new LinkedHashMap<>();
+        top(conflicts, limit, 0).forEach(wallet -> result.put(wallet.getWalletId(), wallet.getCount()));
+        return result;
+    }
+
+    private static List<HotWalletDTO> top(HeavyHitterSketch sketch, int limit, double windowSeconds) {
+        if (sketch == null) {
+            return List.of();
+        }
+        return sketch.snapshot().entrySet().stream()
+                .sorted(Map.Entry.<UUID, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .map(entry -> new HotWalletDTO(entry.getKey(), entry.getValue(),
+                        windowSeconds > 0 ? entry.getValue() / windowSeconds : 0))
+                .toList();
+    }
+
+    /**
+     * Уменьшение счетчиков выполняет поток, первым заметивший истечение интервала
+     */
+    private void decayIfDue() {
+        long last = lastDecay.get();
+        long now = System.nanoTime();
+        if (now - last >= decayIntervalNanos && lastDecay.compareAndSet(last, now)) {
+            operations.decay();
+            conflicts.decay();
+            // При постоянной интенсивности r счетчик после деления равен r * окно, если окно делится так же
+            decayedWindowNanos = (decayedWindowNanos + now - last) / 2;
+        }
+    }
+
+    private long windowNanos() {
+        return decayedWindowNanos + System.nanoTime() - lastDecay.get();
+    }
+}
@@ -0,0 +1,102 @@
+package org.yakov.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.yakov.config.WalletProperties;
+import org.yakov.exception.ErrorCode;
+import org.yakov.model.OperationType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики операций с кошельками. Теги ограничены типом операции и результатом (success или код ошибки),
+ * а счетчики создаются один раз при первом использовании, поэтому запись метрики на горячем пути
+ * сводится к обращению к массиву и атомарному обновлению.
+ *
+ * <ul>
+ *     <li>wallet.operation - полное время операции, включая ожидание в ограничителе и повторы</li>
+ *     <li>wallet.operation.execution - время одной попытки в транзакции БД</li>
+ *     <li>wallet.operation.conflicts - конфликты параллельного изменения, в том числе повторенные</li>
+ *     <li>wallet.operation.attempts - количество попыток на операцию</li>
+ * </ul>
+ */
+@Component
+public class WalletMetrics {
+
+    private static final OperationType[] TYPES = OperationType.values();
+    private static final ErrorCode[] ERROR_CODES = ErrorCode.values();
+    private static final String SUCCESS = "success";
+
+    private final MeterRegistry registry;
+    private final boolean histogram;
+
+    /**
+     * Таймеры по индексу [тип][результат]; последний индекс результата - успех
+     */
+    private final Timer[][] operationTimers = new Timer[TYPES.length][ERROR_CODES.length + 1];
+    private final Timer[][] executionTimers = new Timer[TYPES.length][ERROR_CODES.length + 1];
+    private final Counter[] conflictCounters = new Counter[TYPES.length];
+    private final DistributionSummary attemptsSummary;
+
+    public WalletMetrics(MeterRegistry registry, WalletProperties properties) {
+        this.registry = registry;
+        this.histogram = properties.getMetrics().isHistogram();
+        for (OperationType type : TYPES) {
+            conflictCounters[type.ordinal()] = Counter.builder("wallet.operation.conflicts")
+                    .description("Конфликты параллельного изменения кошелька")
+                    .tag("type", type.name())
+                    .register(registry);
+        }
+        this.attemptsSummary = DistributionSummary.builder("wallet.operation.attempts")
+                .description("Количество попыток выполнения операции")
+                .register(registry);
+    }
+
+    /**
+     * Записывает полное время операции
+     *
+     * @param error исключение, которым завершилась операция, или null при успехе
+     */
+    public void recordOperation(OperationType type, Throwable error, long nanos) {
+        timer(operationTimers, "wallet.operation", "Полное время операции с кошельком", type, error)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Записывает время одной попытки выполнения операции в транзакции
+     */
+    public void recordExecution(OperationType type, Throwable error, long nanos) {
+        timer(executionTimers, "wallet.operation.execution", "Время выполнения операции в транзакции", type, error)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void conflict(OperationType type) {
+        conflictCounters[type.ordinal()].increment();
+    }
+
+    /**
+     * Записывает количество попыток, которое потребовалось операции
+     */
+    public void recordAttempts(int attempts) {
+        attemptsSummary.record(attempts);
+    }
+
+    private Timer timer(Timer[][] timers, String name, String description, OperationType type, Throwable error) {
+        int outcome = error == null ? ERROR_CODES.length : ErrorCode.of(error).ordinal();
+        Timer timer = timers[type.ordinal()][outcome];
+        if (timer == null) {
+            // Повторная регистрация при гонке возвращает тот же таймер
+            timer = Timer.builder(name)
+                    .description(description)
+                    .tag("type", type.name())
+                    .tag("outcome", error == null ? SUCCESS : ERROR_CODES[outcome].name())
+                    .publishPercentileHistogram(histogram)
+                    .register(registry);
+            timers[type.ordinal()][outcome] = timer;
+        }
+        return timer;
+    }
+}
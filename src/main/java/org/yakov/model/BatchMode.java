@@ -0,0 +1,13 @@
+package org.yakov.model;
+
+public enum BatchMode {
+    /**
+     * Пакет применяется целиком или не применяется вовсе
+     */
+    ALL_OR_NOTHING,
+
+    /**
+     * Каждая операция применяется независимо от остальных
+     */
+    PER_ITEM
+}
@@ -0,0 +1,82 @@
+package org.yakov.model;
+
+import org.yakov.exception.RequestValidationException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежные суммы в минимальных единицах (копейках). Баланс кошелька хранится в long с масштабом 2,
+ * поэтому арифметика операции не создает объектов; преобразование в {@link BigDecimal}
+ * выполняется только на границах JSON и БД и всегда точное.
+ */
+public final class MinorUnits {
+
+    public static final int SCALE = 2;
+
+    /**
+     * Наибольшая сумма, представимая в минимальных единицах: 92 233 720 368 547 758.07
+     */
+    public static final BigDecimal MAX_VALUE = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+
+    /**
+     * Количество цифр целой части, при котором сумма переводится через double точно
+     */
+    private static final int FAST_INTEGER_DIGITS = 13;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Переводит сумму в минимальные единицы без округления. Суммы до 92 233 720 368 547 758.07 помещаются в long;
+     * большие значения столбца decimal(19,2) не поддерживаются
+     *
+     * @throws RequestValidationException если сумма содержит более двух знаков после запятой или не помещается в long
+     */
+    public static long of(BigDecimal value) {
+        int scale = value.scale();
+        if (scale >= 0 && scale <= SCALE && value.precision() - scale <= FAST_INTEGER_DIGITS) {
+            // Без выделения памяти: результат меньше 2^53, поэтому ошибка округления double меньше половины единицы
+            return Math.round(value.doubleValue() * 100);
+        }
+        try {
+            return value.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new RequestValidationException("Сумма должна содержать не более двух знаков после запятой и не превышать "
+                    + MAX_VALUE + ": " + value);
+        }
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * @throws RequestValidationException при переполнении
+     */
+    public static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            throw overflow();
+        }
+    }
+
+    /**
+     * @throws RequestValidationException при переполнении
+     */
+    public static long subtract(long a, long b) {
+        try {
+            return Math.subtractExact(a, b);
+        } catch (ArithmeticException e) {
+            throw overflow();
+        }
+    }
+
+    /**
+     * Ошибка операции, после которой баланс превысил бы {@link #MAX_VALUE}
+     */
+    public static RequestValidationException overflow() {
+        return new RequestValidationException("Баланс кошелька превысит допустимое значение");
+    }
+}
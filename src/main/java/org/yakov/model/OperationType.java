@@ -1,6 +1,6 @@
 package org.yakov.model;
 
 public enum OperationType {
-    DEPOSIT, WITHDRAW
+    DEPOSIT, WITHDRAW, TRANSFER
 
 }
@@ -0,0 +1,21 @@
+package org.yakov.model;
+
+/**
+ * Состояние операции, принятой для асинхронного выполнения
+ */
+public enum QueuedOperationStatus {
+    /**
+     * Ожидает выполнения
+     */
+    PENDING,
+    /**
+     * Выбрана обработчиком очереди
+     */
+    PROCESSING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isCompleted() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -1,6 +1,8 @@
 package org.yakov.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,14 +14,28 @@ import java.util.UUID;
 @Data
 @Entity
 @Table(name = "wallets")
+@JsonPropertyOrder({"id", "balance", "version"})
 public class Wallet {
 
     @Id
     private UUID id;
 
-    @Column(nullable = false)
-    private BigDecimal balance = BigDecimal.ZERO;
+    /**
+     * Баланс в минимальных единицах, см. {@link MinorUnits}
+     */
+    @JsonIgnore
+    @Column(name = "balance", nullable = false)
+    @Convert(converter = MinorUnitsConverter.class)
+    private long balanceMinor;
 
     @Version
     private Long version;
+
+    public BigDecimal getBalance() {
+        return MinorUnits.toDecimal(balanceMinor);
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balanceMinor = MinorUnits.of(balance);
+    }
 }
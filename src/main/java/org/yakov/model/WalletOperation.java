@@ -0,0 +1,53 @@
+package org.yakov.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Запись журнала операций. Записи только добавляются и не изменяются.
+ */
+@NoArgsConstructor
+@Data
+@Entity
+@Table(name = "wallet_operations")
+public class WalletOperation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "wallet_operations_seq")
+    @SequenceGenerator(name = "wallet_operations_seq", sequenceName = "wallet_operations_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private UUID walletId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OperationType operationType;
+
+    /**
+     * Изменение баланса со знаком
+     */
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private BigDecimal balanceAfter;
+
+    @Column(nullable = false)
+    private Long walletVersion;
+
+    /**
+     * Второй кошелек перевода: получатель для списания и отправитель для зачисления
+     */
+    private UUID counterpartyWalletId;
+
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
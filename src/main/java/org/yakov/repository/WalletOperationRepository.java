@@ -0,0 +1,17 @@
+package org.yakov.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.yakov.model.WalletOperation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WalletOperationRepository extends JpaRepository<WalletOperation, Long> {
+
+    Optional<WalletOperation> findByIdempotencyKey(String idempotencyKey);
+
+    List<WalletOperation> findAllByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+}
@@ -1,11 +1,41 @@
 package org.yakov.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.yakov.model.Wallet;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface WalletRepository extends JpaRepository<Wallet, UUID> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.id = :id")
+    Optional<Wallet> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * Блокирует кошельки в порядке возрастания идентификатора, что исключает взаимные блокировки
+     * между транзакциями, захватывающими пересекающиеся наборы кошельков
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.id in :ids order by w.id")
+    List<Wallet> findAllByIdForUpdate(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Изменяет баланс одним условным UPDATE, не допуская отрицательного баланса и баланса больше max
+     *
+     * @return обновленный кошелек или пустой результат, если кошелек не найден, средств недостаточно
+     * или баланс превысил бы max
+     */
+    @Query(value = "UPDATE wallets SET balance = balance + :delta, version = version + 1 " +
+            "WHERE id = :id AND balance + :delta BETWEEN 0 AND :max RETURNING *", nativeQuery = true)
+    Optional<Wallet> applyDelta(@Param("id") UUID id, @Param("delta") BigDecimal delta, @Param("max") BigDecimal max);
 }
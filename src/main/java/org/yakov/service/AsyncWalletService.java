@@ -0,0 +1,242 @@
+package org.yakov.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.QueuedOperationDTO;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.dto.WalletOperationResultDTO;
+import org.yakov.exception.ConcurrentModificationException;
+import org.yakov.exception.ErrorCode;
+import org.yakov.exception.OperationNotFoundException;
+import org.yakov.exception.ServiceOverloadedException;
+import org.yakov.model.Wallet;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронное выполнение операций: операция проверяется и сохраняется в {@link WalletOperationQueue},
+ * вызывающий сразу получает ее идентификатор, а результат запрашивает позже.
+ * Обработчики выбирают операции порциями и применяют порцию одной транзакцией через {@link WalletBatchService},
+ * поэтому операции одного кошелька в порции блокируют его строку один раз. Если транзакция порции не удалась,
+ * операции выполняются по одной через {@link WalletOperationRetrier}. В режиме memory операции всегда выполняются по одной.
+ *
+ * <p>Операция в очереди всегда имеет ключ идемпотентности, поэтому повторное выполнение после сбоя обработчика
+ * возвращает результат первого выполнения и не изменяет баланс повторно.
+ *
+ * <p>Обработчики запускаются после создания всех бинов контекста и останавливаются при его закрытии.
+ */
+@Slf4j
+@Service
+public class AsyncWalletService implements SmartLifecycle {
+
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    private static final String GENERATED_KEY_PREFIX = "async-";
+
+    private static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final WalletOperationQueue queue;
+    private final WalletBatchService walletBatchService;
+    private final WalletOperationRetrier walletOperationRetrier;
+    private final WalletProperties.Async properties;
+    private final boolean memoryMode;
+    private final AtomicLong nextCleanup = new AtomicLong();
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public AsyncWalletService(WalletOperationQueue queue,
+                              WalletBatchService walletBatchService,
+                              WalletOperationRetrier walletOperationRetrier,
+                              WalletProperties properties) {
+        this.queue = queue;
+        this.walletBatchService = walletBatchService;
+        this.walletOperationRetrier = walletOperationRetrier;
+        this.properties = properties.getAsync();
+        this.memoryMode = properties.getExecution().isMemory();
+    }
+
+    /**
+     * Проверяет, запрошено ли асинхронное выполнение заголовком {@code Prefer} (RFC 7240)
+     */
+    public static boolean prefersAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            if (preference.trim().equalsIgnoreCase(RESPOND_ASYNC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Принимает проверенную операцию для асинхронного выполнения. Повторная отправка с тем же
+     * ключом идемпотентности возвращает ранее принятую операцию
+     */
+    public QueuedOperationDTO submit(WalletOperationDTO dto) {
+        if (dto.getIdempotencyKey() == null) {
+            dto.setIdempotencyKey(GENERATED_KEY_PREFIX + UUID.randomUUID());
+        }
+        return queue.add(dto);
+    }
+
+    /**
+     * @throws OperationNotFoundException если операция не найдена или ее результат уже удален
+     */
+    public QueuedOperationDTO get(UUID operationId) {
+        return queue.find(operationId)
+                .orElseThrow(() -> new OperationNotFoundException("Операция с ID " + operationId + " не найдена"));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (properties.getWorkers() <= 0) {
+            return;
+        }
+        workers = Executors.newFixedThreadPool(properties.getWorkers(), new CustomizableThreadFactory("wallet-async-"));
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (workers == null) {
+            return;
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Выбирает и выполняет одну порцию операций
+     *
+     * @return количество выбранных операций
+     */
+    int drain() {
+        List<WalletOperationQueue.ClaimedOperation> claimed = queue.claim(properties.getBatchSize(), properties.getLease());
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        if (memoryMode || claimed.size() == 1 || !applyBatch(claimed)) {
+            claimed.forEach(this::applyOne);
+        }
+        return claimed.size();
+    }
+
+    private void work() {
+        while (running) {
+            int claimed = 0;
+            try {
+                cleanup();
+                claimed = drain();
+            } catch (RuntimeException e) {
+                log.warn("Ошибка обработки очереди асинхронных операций", e);
+            }
+            if (claimed < properties.getBatchSize() && !pause()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false, если порцию не удалось применить и операции нужно выполнить по одной
+     */
+    private boolean applyBatch(List<WalletOperationQueue.ClaimedOperation> claimed) {
+        RuntimeException[] errors = new RuntimeException[claimed.size()];
+        WalletBatchResponseDTO response;
+        try {
+            response = walletBatchService.processGroup(
+                    claimed.stream().map(WalletOperationQueue.ClaimedOperation::operation).toList(), errors);
+        } catch (RuntimeException e) {
+            log.debug("Порция из {} асинхронных операций не применена, операции выполняются по одной", claimed.size(), e);
+            return false;
+        }
+        for (int i = 0; i < claimed.size(); i++) {
+            WalletOperationResultDTO result = response.getResults().get(i);
+            if (errors[i] != null) {
+                complete(claimed.get(i), errors[i]);
+            } else {
+                queue.succeed(claimed.get(i).id(), result.getWallet());
+            }
+        }
+        return true;
+    }
+
+    private void applyOne(WalletOperationQueue.ClaimedOperation claimed) {
+        Wallet wallet;
+        try {
+            wallet = walletOperationRetrier.processOperation(claimed.operation());
+        } catch (RuntimeException e) {
+            complete(claimed, e);
+            return;
+        }
+        queue.succeed(claimed.id(), wallet);
+    }
+
+    /**
+     * Завершает операцию с ошибкой либо возвращает ее в очередь, если ошибка временная
+     */
+    private void complete(WalletOperationQueue.ClaimedOperation claimed, RuntimeException e) {
+        ErrorCode errorCode = ErrorCode.of(e);
+        boolean transientError = e instanceof ConcurrentModificationException || e instanceof ServiceOverloadedException;
+        if (errorCode == ErrorCode.INTERNAL_SERVER_ERROR) {
+            log.warn("Асинхронная операция {} не выполнена, попытка {}", claimed.id(), claimed.attempts(), e);
+            transientError = claimed.attempts() < properties.getMaxAttempts();
+        }
+        if (transientError) {
+            queue.release(claimed.id());
+            return;
+        }
+        String message = errorCode == ErrorCode.INTERNAL_SERVER_ERROR ? "Внутренняя ошибка сервера" : e.getMessage();
+        queue.fail(claimed.id(), errorCode.name(), message);
+    }
+
+    /**
+     * Удаляет результаты завершенных операций старше срока хранения; выполняется одним обработчиком раз в интервал
+     */
+    private void cleanup() {
+        long now = System.currentTimeMillis();
+        long next = nextCleanup.get();
+        if (now < next || !nextCleanup.compareAndSet(next, now + CLEANUP_INTERVAL_MILLIS)) {
+            return;
+        }
+        int deleted = queue.deleteCompletedBefore(Instant.now().minus(properties.getRetention()));
+        if (deleted > 0) {
+            log.debug("Удалено {} завершенных асинхронных операций", deleted);
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getPollInterval().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.yakov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.yakov.cache.WalletCache;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.MinorUnits;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Реализация, выполняющая операцию одним условным UPDATE ... RETURNING без предварительного SELECT.
+ * Конфликтов оптимистической блокировки в этом режиме не возникает: строку сериализует сама БД.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.execution.mode", havingValue = "atomic")
+public class AtomicWalletService implements WalletService {
+
+    private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final WalletLedger walletLedger;
+    private final WalletTransferService walletTransferService;
+
+    @Override
+    @Transactional
+    public Wallet processOperation(WalletOperationDTO dto) {
+        if (dto.getOperationType() == OperationType.TRANSFER) {
+            // Перевод изменяет две строки, поэтому выполняется с явной блокировкой обеих
+            return walletTransferService.transfer(dto);
+        }
+        WalletOperations.validateAmount(dto.getAmount());
+        Optional<Wallet> replay = walletLedger.findResult(dto.getIdempotencyKey());
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+
+        BigDecimal delta = WalletOperations.signedAmount(dto.getOperationType(), dto.getAmount());
+
+        Wallet wallet = walletRepository.applyDelta(dto.getWalletId(), delta, MinorUnits.MAX_VALUE)
+                .orElseThrow(() -> walletRepository.existsById(dto.getWalletId())
+                        ? WalletOperations.deltaRejected(dto.getOperationType(), dto.getAmount())
+                        : WalletOperations.walletNotFound(dto.getWalletId()));
+        walletLedger.record(WalletLedger.entry(dto, wallet.getBalance(), wallet.getVersion()));
+        walletCache.putAfterCommit(wallet);
+        return wallet;
+    }
+
+    @Override
+    public Wallet get(UUID uuid) {
+        Optional<Wallet> cached = walletCache.find(uuid);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Wallet wallet = walletRepository.findById(uuid)
+                .orElseThrow(() -> WalletOperations.walletNotFound(uuid));
+        walletCache.put(wallet);
+        return wallet;
+    }
+}
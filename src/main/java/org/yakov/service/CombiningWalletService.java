@@ -0,0 +1,286 @@
+package org.yakov.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+import org.yakov.repository.WalletRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реализация, объединяющая конкурентные операции над одним кошельком в пакеты.
+ * Операции ставятся в очередь кошелька и применяются одной транзакцией с блокировкой строки,
+ * поэтому конкурирующие запросы не завершаются ошибкой оптимистической блокировки.
+ * Каждый вызывающий получает собственный результат или собственное исключение.
+ * После остановки сервиса новые операции отклоняются, а не выполненные операции завершаются ошибкой.
+ */
+@Service
+@ConditionalOnProperty(name = "wallet.execution.mode", havingValue = "combining")
+public class CombiningWalletService implements WalletService, DisposableBean {
+
+    private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final WalletLedger walletLedger;
+    private final WalletTransferService walletTransferService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final ExecutorService executor;
+    private volatile boolean running = true;
+
+    /**
+     * Очередь присутствует в карте, пока для кошелька запланирована или выполняется обработка.
+     * Все изменения очереди выполняются внутри compute, что сериализует их по ключу.
+     */
+    private final ConcurrentHashMap<UUID, ArrayDeque<PendingOperation>> queues = new ConcurrentHashMap<>();
+
+    public CombiningWalletService(WalletRepository walletRepository,
+                                  WalletCache walletCache,
+                                  WalletLedger walletLedger,
+                                  WalletTransferService walletTransferService,
+                                  PlatformTransactionManager transactionManager,
+                                  WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.walletCache = walletCache;
+        this.walletLedger = walletLedger;
+        this.walletTransferService = walletTransferService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = properties.getCombiner().getMaxBatchSize();
+        this.executor = Executors.newFixedThreadPool(properties.getCombiner().getWorkers(),
+                new CustomizableThreadFactory("wallet-combiner-"));
+    }
+
+    @Override
+    public Wallet processOperation(WalletOperationDTO dto) {
+        if (dto.getOperationType() == OperationType.TRANSFER) {
+            // Перевод затрагивает два кошелька и не объединяется с очередью одного из них
+            return walletTransferService.transfer(dto);
+        }
+        WalletOperations.validateAmount(dto.getAmount());
+        if (!running) {
+            throw stopped();
+        }
+
+        PendingOperation operation = new PendingOperation(dto, new CompletableFuture<>());
+        UUID walletId = dto.getWalletId();
+        boolean[] created = new boolean[1];
+        queues.compute(walletId, (id, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                created[0] = true;
+            }
+            queue.add(operation);
+            return queue;
+        });
+        if (created[0]) {
+            schedule(walletId);
+        }
+
+        try {
+            return operation.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Wallet get(UUID uuid) {
+        Optional<Wallet> cached = walletCache.find(uuid);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Wallet wallet = walletRepository.findById(uuid)
+                .orElseThrow(() -> WalletOperations.walletNotFound(uuid));
+        walletCache.put(wallet);
+        return wallet;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        // Операции, для которых обработка не успела выполниться, завершаются, чтобы не оставлять вызывающих в ожидании
+        queues.keySet().forEach(this::failQueue);
+    }
+
+    /**
+     * Планирует обработку очереди кошелька; после остановки исполнителя операции очереди завершаются ошибкой
+     */
+    private void schedule(UUID walletId) {
+        try {
+            executor.execute(() -> drain(walletId));
+        } catch (RejectedExecutionException e) {
+            failQueue(walletId);
+        }
+    }
+
+    private void failQueue(UUID walletId) {
+        ArrayDeque<PendingOperation> queue = queues.remove(walletId);
+        if (queue != null) {
+            queue.forEach(operation -> operation.result().completeExceptionally(stopped()));
+        }
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Объединение операций остановлено");
+    }
+
+    private void drain(UUID walletId) {
+        List<PendingOperation> batch = new ArrayList<>();
+        queues.computeIfPresent(walletId, (id, queue) -> {
+            while (batch.size() < maxBatchSize && !queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+            return queue;
+        });
+
+        try {
+            applyBatch(walletId, batch);
+        } finally {
+            // Кошелек освобождается только при пустой очереди, иначе обработка продолжается
+            // отдельной задачей, чтобы не задерживать другие кошельки
+            ArrayDeque<PendingOperation> remaining = queues.computeIfPresent(walletId,
+                    (id, queue) -> queue.isEmpty() ? null : queue);
+            if (remaining != null) {
+                schedule(walletId);
+            }
+        }
+    }
+
+    /**
+     * Повторы операций с выполненным ключом идемпотентности завершаются до блокировки кошелька;
+     * если в пакете остались только повторы, транзакция с блокировкой не выполняется
+     */
+    private void applyBatch(UUID walletId, List<PendingOperation> pending) {
+        List<PendingOperation> batch;
+        try {
+            batch = completeReplays(pending);
+        } catch (RuntimeException e) {
+            pending.forEach(operation -> operation.result().completeExceptionally(e));
+            return;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Object[] outcomes = new Object[batch.size()];
+        Wallet committed;
+        try {
+            committed = transactionTemplate.execute(status -> {
+                Wallet wallet = walletRepository.findByIdForUpdate(walletId)
+                        .orElseThrow(() -> WalletOperations.walletNotFound(walletId));
+                Set<String> keys = new HashSet<>();
+
+                boolean changed = false;
+                for (int i = 0; i < batch.size(); i++) {
+                    WalletOperationDTO dto = batch.get(i).dto();
+                    String key = dto.getIdempotencyKey();
+                    if (key != null && !keys.add(key)) {
+                        outcomes[i] = WalletOperations.duplicateIdempotencyKey();
+                        continue;
+                    }
+                    try {
+                        WalletOperations.apply(wallet, dto.getOperationType(), dto.getAmount());
+                        outcomes[i] = wallet.getBalance();
+                        changed = true;
+                    } catch (RuntimeException e) {
+                        outcomes[i] = e;
+                    }
+                }
+
+                if (!changed) {
+                    return wallet;
+                }
+                Wallet saved = walletRepository.save(wallet);
+                walletRepository.flush();
+
+                List<WalletOperation> entries = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (outcomes[i] instanceof BigDecimal balance) {
+                        entries.add(WalletLedger.entry(batch.get(i).dto(), balance, saved.getVersion()));
+                    }
+                }
+                walletLedger.recordAll(entries);
+                walletCache.putAfterCommit(saved);
+                return saved;
+            });
+        } catch (ObjectOptimisticLockingFailureException e) {
+            batch.forEach(operation -> operation.result().completeExceptionally(WalletOperations.concurrentModification()));
+            return;
+        } catch (RuntimeException e) {
+            batch.forEach(operation -> operation.result().completeExceptionally(e));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcomes[i] instanceof BigDecimal balance) {
+                Wallet result = new Wallet();
+                result.setId(walletId);
+                result.setBalance(balance);
+                result.setVersion(committed.getVersion());
+                batch.get(i).result().complete(result);
+            } else {
+                batch.get(i).result().completeExceptionally((RuntimeException) outcomes[i]);
+            }
+        }
+    }
+
+    /**
+     * Завершает повторы результатами из журнала. Журнал читается в транзакции на основном сервере:
+     * реплика может еще не содержать недавно выполненную операцию
+     *
+     * @return операции, которые нужно выполнить
+     */
+    private List<PendingOperation> completeReplays(List<PendingOperation> batch) {
+        List<String> keys = batch.stream()
+                .map(operation -> operation.dto().getIdempotencyKey())
+                .filter(Objects::nonNull)
+                .toList();
+        if (keys.isEmpty()) {
+            return batch;
+        }
+        Map<String, Wallet> replays = transactionTemplate.execute(status -> walletLedger.findResults(keys));
+        List<PendingOperation> remaining = new ArrayList<>(batch.size());
+        for (PendingOperation operation : batch) {
+            Wallet replay = replays.get(operation.dto().getIdempotencyKey());
+            if (replay != null) {
+                operation.result().complete(replay);
+            } else {
+                remaining.add(operation);
+            }
+        }
+        return remaining;
+    }
+
+    private record PendingOperation(WalletOperationDTO dto, CompletableFuture<Wallet> result) {
+    }
+}
@@ -0,0 +1,152 @@
+package org.yakov.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реализация с групповой фиксацией: операции разных кошельков, поступившие в течение короткого окна,
+ * применяются одной транзакцией через {@link WalletBatchService}, поэтому стоимость фиксации
+ * и сброса журнала БД делится между вызывающими. Ошибка отдельной операции не влияет на остальные операции группы.
+ */
+@Service
+@ConditionalOnProperty(name = "wallet.execution.mode", havingValue = "group")
+public class GroupCommitWalletService implements WalletService, DisposableBean {
+
+    private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final WalletBatchService walletBatchService;
+    private final long windowNanos;
+    private final int maxSize;
+    private final BlockingQueue<PendingOperation> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService executor;
+    private final Thread collector;
+    private volatile boolean running = true;
+
+    public GroupCommitWalletService(WalletRepository walletRepository,
+                                    WalletCache walletCache,
+                                    WalletBatchService walletBatchService,
+                                    WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.walletCache = walletCache;
+        this.walletBatchService = walletBatchService;
+        this.windowNanos = properties.getGroupCommit().getWindow().toNanos();
+        this.maxSize = Math.min(properties.getGroupCommit().getMaxSize(), properties.getBatch().getMaxSize());
+        this.executor = Executors.newFixedThreadPool(properties.getGroupCommit().getWorkers(),
+                new CustomizableThreadFactory("wallet-group-commit-"));
+        this.collector = new CustomizableThreadFactory("wallet-group-collector-").newThread(this::collect);
+        this.collector.start();
+    }
+
+    @Override
+    public Wallet processOperation(WalletOperationDTO dto) {
+        if (!running) {
+            throw new IllegalStateException("Групповая фиксация остановлена");
+        }
+        PendingOperation operation = new PendingOperation(dto, new CompletableFuture<>());
+        queue.add(operation);
+        try {
+            return operation.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Wallet get(UUID uuid) {
+        Optional<Wallet> cached = walletCache.find(uuid);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Wallet wallet = walletRepository.findById(uuid)
+                .orElseThrow(() -> WalletOperations.walletNotFound(uuid));
+        walletCache.put(wallet);
+        return wallet;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        collector.join();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Собирает группу: первая операция открывает окно, группа отправляется на фиксацию
+     * по истечении окна или после заполнения
+     */
+    private void collect() {
+        while (running || !queue.isEmpty()) {
+            List<PendingOperation> group = new ArrayList<>();
+            try {
+                PendingOperation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxSize) {
+                    queue.drainTo(group, maxSize - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= maxSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingOperation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        group.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!group.isEmpty()) {
+                executor.execute(() -> commit(group));
+            }
+        }
+    }
+
+    private void commit(List<PendingOperation> group) {
+        RuntimeException[] errors = new RuntimeException[group.size()];
+        WalletBatchResponseDTO response;
+        try {
+            response = walletBatchService.processGroup(group.stream().map(PendingOperation::dto).toList(), errors);
+        } catch (RuntimeException e) {
+            group.forEach(operation -> operation.result().completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            if (errors[i] != null) {
+                group.get(i).result().completeExceptionally(errors[i]);
+            } else {
+                group.get(i).result().complete(response.getResults().get(i).getWallet());
+            }
+        }
+    }
+
+    private record PendingOperation(WalletOperationDTO dto, CompletableFuture<Wallet> result) {
+    }
+}
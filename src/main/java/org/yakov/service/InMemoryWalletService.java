@@ -0,0 +1,82 @@
+package org.yakov.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.engine.PostgresWalletStore;
+import org.yakov.engine.WalletEngine;
+import org.yakov.model.Wallet;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Реализация на движке в памяти: операции выполняются сегментами движка и фиксируются в журнале предзаписи,
+ * а в PostgreSQL переносятся асинхронно. Ответ отправляется после сброса журнала на диск.
+ * Пакетные операции и неблокирующий API в этом режиме недоступны: они изменяют таблицы в обход движка.
+ */
+@Service
+@ConditionalOnProperty(name = "wallet.execution.mode", havingValue = "memory")
+public class InMemoryWalletService implements WalletService, DisposableBean, MeterBinder {
+
+    private final WalletLedger walletLedger;
+    private final WalletEngine engine;
+    private final TransactionTemplate primaryTransaction;
+
+    public InMemoryWalletService(PostgresWalletStore store,
+                                 WalletLedger walletLedger,
+                                 PlatformTransactionManager transactionManager,
+                                 WalletProperties properties) {
+        if (properties.getReactive().isEnabled()) {
+            throw new IllegalStateException("Неблокирующий API несовместим с режимом memory");
+        }
+        this.walletLedger = walletLedger;
+        this.engine = new WalletEngine(properties.getEngine(), store);
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Wallet processOperation(WalletOperationDTO dto) {
+        // Ключи операций, уже перенесенных в БД, движок может не хранить. Ключ ищется на основном сервере:
+        // реплика может еще не содержать операцию, ключ которой движок уже удалил
+        Optional<Wallet> replay = dto.getIdempotencyKey() == null
+                ? Optional.empty()
+                : primaryTransaction.execute(status -> walletLedger.findResult(dto.getIdempotencyKey()));
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+        return engine.process(dto);
+    }
+
+    @Override
+    public Wallet get(UUID uuid) {
+        return engine.get(uuid);
+    }
+
+    /**
+     * Самое раннее время создания среди операций, еще не перенесенных в PostgreSQL
+     */
+    public Optional<Instant> oldestUnsynced() {
+        return engine.oldestUnsynced();
+    }
+
+    @Override
+    public void destroy() {
+        engine.close();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wallet.engine.sync.lag", engine, WalletEngine::syncLag)
+                .description("Записи журнала движка, ожидающие переноса в PostgreSQL")
+                .register(registry);
+    }
+}
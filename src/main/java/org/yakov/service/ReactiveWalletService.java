@@ -0,0 +1,199 @@
+package org.yakov.service;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.yakov.cache.WalletCache;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.metrics.WalletMetrics;
+import org.yakov.model.MinorUnits;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Неблокирующий аналог {@link WalletService} на R2DBC.
+ * Пополнение и снятие выполняются одним оператором: условный UPDATE ... RETURNING и запись журнала
+ * в общем CTE, поэтому операция не требует явной транзакции и не удерживает соединение между запросами.
+ * Перевод выполняется в транзакции с блокировкой обеих строк в порядке {@link WalletOperations#LOCK_ORDER}.
+ */
+@Service
+@ConditionalOnProperty(name = "wallet.reactive.enabled", havingValue = "true")
+public class ReactiveWalletService {
+
+    private static final String APPLY_DELTA = """
+            WITH updated AS (
+                UPDATE wallets SET balance = balance + :delta, version = version + 1
+                WHERE id = :id AND balance + :delta BETWEEN 0 AND :max
+                RETURNING id, balance, version
+            ), entry AS (
+                INSERT INTO wallet_operations
+                    (id, wallet_id, operation_type, amount, balance_after, wallet_version, idempotency_key, created_at)
+                SELECT nextval('wallet_operations_seq'), id, :type, :delta, balance, version, :key, now()
+                FROM updated
+            )
+            SELECT id, balance, version FROM updated""";
+
+    private static final String INSERT_ENTRY = """
+            INSERT INTO wallet_operations
+                (id, wallet_id, counterparty_wallet_id, operation_type, amount, balance_after, wallet_version, idempotency_key, created_at)
+            VALUES (nextval('wallet_operations_seq'), :walletId, :counterpartyId, :type, :amount, :balanceAfter, :version, :key, :createdAt)""";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final WalletCache walletCache;
+    private final WalletMetrics walletMetrics;
+
+    public ReactiveWalletService(DatabaseClient walletDatabaseClient,
+                                 TransactionalOperator walletTransactionalOperator,
+                                 WalletCache walletCache,
+                                 WalletMetrics walletMetrics) {
+        this.databaseClient = walletDatabaseClient;
+        this.transactionalOperator = walletTransactionalOperator;
+        this.walletCache = walletCache;
+        this.walletMetrics = walletMetrics;
+    }
+
+    public Mono<Wallet> processOperation(WalletOperationDTO dto) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return execute(dto)
+                    .doOnSuccess(wallet -> walletMetrics.recordOperation(dto.getOperationType(), null, System.nanoTime() - started))
+                    .doOnError(e -> walletMetrics.recordOperation(dto.getOperationType(), e, System.nanoTime() - started));
+        });
+    }
+
+    private Mono<Wallet> execute(WalletOperationDTO dto) {
+        return Mono.defer(() -> {
+            WalletOperations.validateAmount(dto.getAmount());
+            if (dto.getOperationType() == OperationType.TRANSFER) {
+                WalletOperations.validateTransferTarget(dto.getWalletId(), dto.getTargetWalletId());
+                return findResult(dto.getIdempotencyKey()).switchIfEmpty(Mono.defer(() -> transfer(dto)));
+            }
+            BigDecimal delta = WalletOperations.signedAmount(dto.getOperationType(), dto.getAmount());
+            return findResult(dto.getIdempotencyKey()).switchIfEmpty(Mono.defer(() -> applyDelta(dto, delta)));
+        }).onErrorResume(DataIntegrityViolationException.class, e -> findResult(dto.getIdempotencyKey())
+                // Параллельный запрос с тем же ключом зафиксирован раньше: возвращается его результат
+                .switchIfEmpty(Mono.error(WalletOperations::duplicateIdempotencyKey)));
+    }
+
+    public Mono<Wallet> get(UUID uuid) {
+        return Mono.defer(() -> walletCache.find(uuid).map(Mono::just).orElseGet(() -> databaseClient
+                .sql("SELECT id, balance, version FROM wallets WHERE id = :id")
+                .bind("id", uuid)
+                .map(ReactiveWalletService::toWallet)
+                .one()
+                .doOnNext(walletCache::put)
+                .switchIfEmpty(Mono.error(() -> WalletOperations.walletNotFound(uuid)))));
+    }
+
+    private Mono<Wallet> applyDelta(WalletOperationDTO dto, BigDecimal delta) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(APPLY_DELTA)
+                .bind("id", dto.getWalletId())
+                .bind("delta", delta)
+                .bind("max", MinorUnits.MAX_VALUE)
+                .bind("type", dto.getOperationType().name());
+        spec = dto.getIdempotencyKey() == null ? spec.bindNull("key", String.class) : spec.bind("key", dto.getIdempotencyKey());
+        return spec.map(ReactiveWalletService::toWallet)
+                .one()
+                .doOnNext(walletCache::put)
+                .switchIfEmpty(Mono.defer(() -> exists(dto.getWalletId())
+                        .flatMap(exists -> Mono.error(exists
+                                ? WalletOperations.deltaRejected(dto.getOperationType(), dto.getAmount())
+                                : WalletOperations.walletNotFound(dto.getWalletId())))));
+    }
+
+    private Mono<Wallet> transfer(WalletOperationDTO dto) {
+        UUID sourceId = dto.getWalletId();
+        UUID targetId = dto.getTargetWalletId();
+        boolean sourceFirst = WalletOperations.LOCK_ORDER.compare(sourceId, targetId) < 0;
+        UUID firstId = sourceFirst ? sourceId : targetId;
+        UUID secondId = sourceFirst ? targetId : sourceId;
+
+        Mono<List<Wallet>> transferred = lock(firstId)
+                .flatMap(first -> lock(secondId).map(second -> sourceFirst ? List.of(first, second) : List.of(second, first)))
+                .flatMap(wallets -> {
+                    Wallet source = wallets.get(0);
+                    Wallet target = wallets.get(1);
+                    WalletOperations.transfer(source, target, dto.getAmount());
+                    return save(source)
+                            .then(save(target))
+                            .thenMany(Flux.defer(() -> Flux.fromIterable(WalletLedger.transferEntries(dto, source, target))))
+                            .concatMap(this::insertEntry)
+                            .then(Mono.just(wallets));
+                })
+                .as(transactionalOperator::transactional);
+
+        return transferred.map(wallets -> {
+            wallets.forEach(walletCache::put);
+            return wallets.get(0);
+        });
+    }
+
+    private Mono<Wallet> lock(UUID walletId) {
+        return databaseClient.sql("SELECT id, balance, version FROM wallets WHERE id = :id FOR UPDATE")
+                .bind("id", walletId)
+                .map(ReactiveWalletService::toWallet)
+                .one()
+                .switchIfEmpty(Mono.error(() -> WalletOperations.walletNotFound(walletId)));
+    }
+
+    private Mono<Void> save(Wallet wallet) {
+        return databaseClient.sql("UPDATE wallets SET balance = :balance, version = version + 1 WHERE id = :id RETURNING version")
+                .bind("balance", wallet.getBalance())
+                .bind("id", wallet.getId())
+                .map(row -> row.get("version", Long.class))
+                .one()
+                .doOnNext(wallet::setVersion)
+                .then();
+    }
+
+    private Mono<Void> insertEntry(WalletOperation entry) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(INSERT_ENTRY)
+                .bind("walletId", entry.getWalletId())
+                .bind("counterpartyId", entry.getCounterpartyWalletId())
+                .bind("type", entry.getOperationType().name())
+                .bind("amount", entry.getAmount())
+                .bind("balanceAfter", entry.getBalanceAfter())
+                .bind("version", entry.getWalletVersion())
+                .bind("createdAt", entry.getCreatedAt());
+        spec = entry.getIdempotencyKey() == null ? spec.bindNull("key", String.class) : spec.bind("key", entry.getIdempotencyKey());
+        return spec.then();
+    }
+
+    private Mono<Wallet> findResult(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Mono.empty();
+        }
+        return databaseClient.sql("SELECT wallet_id AS id, balance_after AS balance, wallet_version AS version " +
+                        "FROM wallet_operations WHERE idempotency_key = :key")
+                .bind("key", idempotencyKey)
+                .map(ReactiveWalletService::toWallet)
+                .one();
+    }
+
+    private Mono<Boolean> exists(UUID walletId) {
+        return databaseClient.sql("SELECT 1 FROM wallets WHERE id = :id")
+                .bind("id", walletId)
+                .map(row -> true)
+                .one()
+                .defaultIfEmpty(false);
+    }
+
+    private static Wallet toWallet(Readable row) {
+        Wallet wallet = new Wallet();
+        wallet.setId(row.get("id", UUID.class));
+        wallet.setBalance(row.get("balance", BigDecimal.class));
+        wallet.setVersion(row.get("version", Long.class));
+        return wallet;
+    }
+}
@@ -0,0 +1,249 @@
+package org.yakov.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.dto.WalletOperationResultDTO;
+import org.yakov.exception.ErrorCode;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.model.BatchMode;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+import org.yakov.repository.WalletRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Применяет пакет операций в одной транзакции.
+ * Операции группируются по кошельку, каждая строка блокируется один раз,
+ * а изменения отправляются в БД пакетными UPDATE при сбросе контекста.
+ * Если в режиме {@link BatchMode#PER_ITEM} транзакция пакета не удалась целиком (например, из-за нарушения
+ * уникальности ключа идемпотентности), операции применяются по одной, чтобы ошибка досталась только ее источнику.
+ */
+@Slf4j
+@Service
+public class WalletBatchService {
+
+    private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final WalletLedger walletLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletProperties.Batch properties;
+    private final boolean memoryMode;
+
+    public WalletBatchService(WalletRepository walletRepository,
+                              WalletCache walletCache,
+                              WalletLedger walletLedger,
+                              PlatformTransactionManager transactionManager,
+                              WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.walletCache = walletCache;
+        this.walletLedger = walletLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties.getBatch();
+        this.memoryMode = properties.getExecution().isMemory();
+    }
+
+    /**
+     * Применяет пакет операций
+     *
+     * @param operations операции в порядке применения
+     * @param mode       режим пакета
+     * @return результаты по каждой операции в исходном порядке
+     * @throws RequestValidationException если пакет превышает допустимый размер или операции выполняет движок в памяти
+     */
+    public WalletBatchResponseDTO process(List<WalletOperationDTO> operations, BatchMode mode) {
+        if (memoryMode) {
+            // Пакет изменяет таблицы напрямую, а в режиме memory балансы ведет движок
+            throw new RequestValidationException("Пакетные операции недоступны в режиме memory");
+        }
+        if (operations.size() > properties.getMaxSize()) {
+            throw new RequestValidationException("Пакет не может содержать более " + properties.getMaxSize() + " операций");
+        }
+
+        return execute(operations, mode, new RuntimeException[operations.size()]);
+    }
+
+    /**
+     * Применяет группу независимых операций разных вызывающих одной транзакцией в режиме {@link BatchMode#PER_ITEM}
+     *
+     * @param operations операции группы
+     * @param errors     заполняется исключениями операций, завершившихся ошибкой, по индексу операции
+     * @return результаты по каждой операции в исходном порядке
+     */
+    public WalletBatchResponseDTO processGroup(List<WalletOperationDTO> operations, RuntimeException[] errors) {
+        return execute(operations, BatchMode.PER_ITEM, errors);
+    }
+
+    private WalletBatchResponseDTO execute(List<WalletOperationDTO> operations, BatchMode mode, RuntimeException[] errors) {
+        WalletOperationResultDTO[] results = new WalletOperationResultDTO[operations.size()];
+        boolean applied;
+        try {
+            transactionTemplate.executeWithoutResult(status -> applyAll(operations, mode, results, errors));
+            applied = true;
+        } catch (BatchAbortedException e) {
+            applied = false;
+        } catch (RuntimeException e) {
+            if (mode != BatchMode.PER_ITEM) {
+                throw e;
+            }
+            applyEach(operations, e, results, errors);
+            applied = true;
+        }
+
+        int succeeded = (int) Arrays.stream(results).filter(WalletOperationResultDTO::isSuccess).count();
+        return new WalletBatchResponseDTO(mode, applied, succeeded, results.length - succeeded, Arrays.asList(results));
+    }
+
+    private void applyEach(List<WalletOperationDTO> operations, RuntimeException failure,
+                           WalletOperationResultDTO[] results, RuntimeException[] errors) {
+        if (operations.size() == 1) {
+            results[0] = WalletOperationResultDTO.failure(0, operations.get(0).getWalletId(), failure);
+            errors[0] = failure;
+            return;
+        }
+        log.debug("Пакет из {} операций не применен, операции выполняются по одной", operations.size(), failure);
+        for (int i = 0; i < operations.size(); i++) {
+            RuntimeException[] error = new RuntimeException[1];
+            results[i] = execute(List.of(operations.get(i)), BatchMode.PER_ITEM, error).getResults().get(0);
+            results[i].setIndex(i);
+            errors[i] = error[0];
+        }
+    }
+
+    private void applyAll(List<WalletOperationDTO> operations, BatchMode mode, WalletOperationResultDTO[] results,
+                          RuntimeException[] errors) {
+        Map<String, Wallet> replays = walletLedger.findResults(operations.stream()
+                .map(WalletOperationDTO::getIdempotencyKey)
+                .filter(Objects::nonNull)
+                .toList());
+        Set<String> keys = new HashSet<>();
+        // Кошельки повторов не блокируются: их результат берется из журнала
+        Map<UUID, Wallet> wallets = lockWallets(operations.stream()
+                .filter(dto -> dto.getIdempotencyKey() == null || !replays.containsKey(dto.getIdempotencyKey()))
+                .toList());
+        BigDecimal[] balances = new BigDecimal[operations.size()];
+        BigDecimal[] targetBalances = new BigDecimal[operations.size()];
+        int failedIndex = -1;
+
+        for (int i = 0; i < operations.size(); i++) {
+            WalletOperationDTO dto = operations.get(i);
+            String key = dto.getIdempotencyKey();
+            if (key != null && replays.containsKey(key)) {
+                results[i] = WalletOperationResultDTO.success(i, replays.get(key));
+                continue;
+            }
+            try {
+                if (key != null && !keys.add(key)) {
+                    throw WalletOperations.duplicateIdempotencyKey();
+                }
+                Wallet wallet = wallets.get(dto.getWalletId());
+                if (wallet == null) {
+                    throw WalletOperations.walletNotFound(dto.getWalletId());
+                }
+                WalletOperations.validateAmount(dto.getAmount());
+                if (dto.getOperationType() == OperationType.TRANSFER) {
+                    WalletOperations.validateTransferTarget(dto.getWalletId(), dto.getTargetWalletId());
+                    Wallet target = wallets.get(dto.getTargetWalletId());
+                    if (target == null) {
+                        throw WalletOperations.walletNotFound(dto.getTargetWalletId());
+                    }
+                    WalletOperations.transfer(wallet, target, dto.getAmount());
+                    targetBalances[i] = target.getBalance();
+                } else {
+                    WalletOperations.apply(wallet, dto.getOperationType(), dto.getAmount());
+                }
+                balances[i] = wallet.getBalance();
+            } catch (RuntimeException e) {
+                results[i] = WalletOperationResultDTO.failure(i, dto.getWalletId(), e);
+                errors[i] = e;
+                if (mode == BatchMode.ALL_OR_NOTHING) {
+                    failedIndex = i;
+                    break;
+                }
+            }
+        }
+
+        if (failedIndex >= 0) {
+            for (int i = 0; i < results.length; i++) {
+                if (i != failedIndex) {
+                    results[i] = WalletOperationResultDTO.failure(i, operations.get(i).getWalletId(), ErrorCode.BATCH_ABORTED,
+                            "Операция отменена из-за ошибки в операции " + failedIndex);
+                }
+            }
+            throw new BatchAbortedException();
+        }
+
+        walletRepository.flush();
+
+        Set<UUID> changed = new HashSet<>();
+        List<WalletOperation> entries = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                WalletOperationDTO dto = operations.get(i);
+                Wallet snapshot = snapshot(wallets.get(dto.getWalletId()), balances[i], changed);
+                results[i] = WalletOperationResultDTO.success(i, snapshot);
+                if (dto.getOperationType() == OperationType.TRANSFER) {
+                    Wallet target = snapshot(wallets.get(dto.getTargetWalletId()), targetBalances[i], changed);
+                    entries.addAll(WalletLedger.transferEntries(dto, snapshot, target));
+                } else {
+                    entries.add(WalletLedger.entry(dto, balances[i], snapshot.getVersion()));
+                }
+            }
+        }
+        walletLedger.recordAll(entries);
+    }
+
+    /**
+     * Возвращает состояние кошелька после операции и планирует обновление кэша для каждого измененного кошелька
+     */
+    private Wallet snapshot(Wallet wallet, BigDecimal balance, Set<UUID> changed) {
+        if (changed.add(wallet.getId())) {
+            walletCache.putAfterCommit(wallet);
+        }
+        Wallet snapshot = WalletOperations.copyOf(wallet);
+        snapshot.setBalance(balance);
+        return snapshot;
+    }
+
+    private Map<UUID, Wallet> lockWallets(List<WalletOperationDTO> operations) {
+        // Кошельки получателей переводов блокируются вместе с остальными в общем порядке
+        List<UUID> ids = new ArrayList<>(operations.stream()
+                .flatMap(dto -> Stream.of(dto.getWalletId(), dto.getTargetWalletId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(() -> new TreeSet<>(WalletOperations.LOCK_ORDER))));
+        Map<UUID, Wallet> wallets = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += properties.getLockChunkSize()) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + properties.getLockChunkSize(), ids.size()));
+            walletRepository.findAllByIdForUpdate(chunk).forEach(wallet -> wallets.put(wallet.getId(), wallet));
+        }
+        return wallets;
+    }
+
+    /**
+     * Откатывает транзакцию пакета в режиме {@link BatchMode#ALL_OR_NOTHING}
+     */
+    private static class BatchAbortedException extends RuntimeException {
+        BatchAbortedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.yakov.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.yakov.config.WalletProperties;
+import org.yakov.exception.ServiceOverloadedException;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ограничивает число одновременно выполняемых операций с кошельками размером пула соединений.
+ * Лишние запросы ожидают в очереди семафора, а не в пуле соединений: при обработке в виртуальных потоках
+ * ожидание не занимает поток платформы и не приводит к исчерпанию таймаута получения соединения.
+ */
+@Component
+public class WalletConcurrencyLimiter implements MeterBinder {
+
+    private static final int DEFAULT_MAX_CONCURRENT = 10;
+
+    private final Semaphore semaphore;
+    private final long acquireTimeoutNanos;
+
+    public WalletConcurrencyLimiter(WalletProperties properties, DataSource dataSource) {
+        WalletProperties.Limiter limiter = properties.getLimiter();
+        int maxConcurrent = limiter.getMaxConcurrent() > 0 ? limiter.getMaxConcurrent() : poolSize(dataSource);
+        this.semaphore = limiter.isEnabled() ? new Semaphore(maxConcurrent, true) : null;
+        this.acquireTimeoutNanos = limiter.getAcquireTimeout().toNanos();
+    }
+
+    /**
+     * Выполняет действие, дождавшись свободного места
+     *
+     * @throws ServiceOverloadedException если место не освободилось за время ожидания
+     */
+    public <T> T execute(Supplier<T> action) {
+        if (semaphore == null) {
+            return action.get();
+        }
+        acquire();
+        try {
+            return action.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (semaphore == null) {
+            return;
+        }
+        Gauge.builder("wallet.limiter.available", semaphore, Semaphore::availablePermits)
+                .description("Свободные места в ограничителе операций")
+                .register(registry);
+        Gauge.builder("wallet.limiter.queued", semaphore, Semaphore::getQueueLength)
+                .description("Запросы, ожидающие места в ограничителе операций")
+                .register(registry);
+    }
+
+    private void acquire() {
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw overloaded();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        }
+    }
+
+    private static ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException("Сервис перегружен. Пожалуйста, повторите запрос позже.");
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            // размер пула недоступен, используется значение по умолчанию
+        }
+        return DEFAULT_MAX_CONCURRENT;
+    }
+}
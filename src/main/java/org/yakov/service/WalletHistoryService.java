@@ -0,0 +1,192 @@
+package org.yakov.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletHistoryQuery;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.repository.WalletRepository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Постраничное чтение истории операций кошелька.
+ * Страницы выбираются по ключу (created_at, id) с использованием составного индекса,
+ * поэтому стоимость запроса не зависит от номера страницы. Строки пишутся в ответ
+ * по мере чтения из курсора БД без промежуточной загрузки всей страницы в память.
+ */
+@Service
+public class WalletHistoryService {
+
+    private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final WalletProperties.History properties;
+
+    public WalletHistoryService(WalletRepository walletRepository,
+                                WalletCache walletCache,
+                                DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper,
+                                WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.walletCache = walletCache;
+        this.properties = properties.getHistory();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(this.properties.getFetchSize());
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Проверяет параметры запроса и существование кошелька до начала записи ответа
+     *
+     * @throws org.yakov.exception.WalletNotFoundException если кошелек не найден
+     * @throws RequestValidationException если параметры запроса некорректны
+     */
+    public WalletHistoryQuery prepare(UUID walletId, Instant from, Instant to, String cursor, Integer limit) {
+        int pageSize = limit == null ? properties.getDefaultPageSize() : limit;
+        if (pageSize < 1 || pageSize > properties.getMaxPageSize()) {
+            throw new RequestValidationException("Размер страницы должен быть от 1 до " + properties.getMaxPageSize());
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new RequestValidationException("Начало интервала должно предшествовать его концу");
+        }
+        if (walletCache.find(walletId).isEmpty() && !walletRepository.existsById(walletId)) {
+            throw WalletOperations.walletNotFound(walletId);
+        }
+
+        Instant afterCreated = null;
+        Long afterId = null;
+        if (cursor != null) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+                afterCreated = fromMicros(buffer.getLong());
+                afterId = buffer.getLong();
+            } catch (RuntimeException e) {
+                throw new RequestValidationException("Некорректный курсор страницы");
+            }
+        }
+        return new WalletHistoryQuery(walletId, from, to, afterCreated, afterId, pageSize);
+    }
+
+    /**
+     * Пишет страницу истории в формате JSON: операции от новых к старым и курсор следующей страницы
+     */
+    public void write(WalletHistoryQuery query, OutputStream output) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT id, operation_type, amount, balance_after, wallet_version, counterparty_wallet_id, created_at " +
+                "FROM wallet_operations WHERE wallet_id = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(query.walletId());
+        if (query.from() != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(query.from().atOffset(ZoneOffset.UTC));
+        }
+        if (query.to() != null) {
+            sql.append(" AND created_at < ?");
+            params.add(query.to().atOffset(ZoneOffset.UTC));
+        }
+        if (query.afterId() != null) {
+            sql.append(" AND (created_at, id) < (?, ?)");
+            params.add(query.afterCreated().atOffset(ZoneOffset.UTC));
+            params.add(query.afterId());
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        params.add(query.limit());
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("walletId", query.walletId().toString());
+            generator.writeArrayFieldStart("operations");
+
+            PageWriter pageWriter = new PageWriter(generator);
+            try {
+                readOnlyTransaction.executeWithoutResult(status ->
+                        jdbcTemplate.query(sql.toString(), pageWriter, params.toArray()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            generator.writeEndArray();
+            if (pageWriter.count == query.limit()) {
+                generator.writeStringField("nextCursor", encodeCursor(pageWriter.lastCreated, pageWriter.lastId));
+            } else {
+                generator.writeNullField("nextCursor");
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private static String encodeCursor(Instant created, long id) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(toMicros(created));
+        buffer.putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000L);
+    }
+
+    private static class PageWriter implements RowCallbackHandler {
+        private final JsonGenerator generator;
+        private int count;
+        private Instant lastCreated;
+        private long lastId;
+
+        PageWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            lastId = rs.getLong("id");
+            lastCreated = rs.getObject("created_at", OffsetDateTime.class).toInstant();
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("id", lastId);
+                generator.writeStringField("operationType", rs.getString("operation_type"));
+                generator.writeNumberField("amount", rs.getBigDecimal("amount"));
+                generator.writeNumberField("balanceAfter", rs.getBigDecimal("balance_after"));
+                generator.writeNumberField("walletVersion", rs.getLong("wallet_version"));
+                String counterparty = rs.getString("counterparty_wallet_id");
+                if (counterparty != null) {
+                    generator.writeStringField("counterpartyWalletId", counterparty);
+                }
+                generator.writeStringField("createdAt", lastCreated.toString());
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.yakov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.ConcurrentModificationException;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+import org.yakov.repository.WalletOperationRepository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Журнал операций с кошельками. Записи добавляются в транзакции, изменяющей баланс,
+ * а ключ идемпотентности позволяет вернуть результат повторного запроса без изменения кошелька.
+ */
+@Component
+@RequiredArgsConstructor
+public class WalletLedger {
+
+    private final WalletOperationRepository walletOperationRepository;
+
+    /**
+     * Создает запись журнала для успешно примененной операции
+     *
+     * @param dto           примененная операция
+     * @param balanceAfter  баланс после операции
+     * @param walletVersion версия кошелька после фиксации изменения
+     */
+    public static WalletOperation entry(WalletOperationDTO dto, BigDecimal balanceAfter, Long walletVersion) {
+        WalletOperation operation = new WalletOperation();
+        operation.setWalletId(dto.getWalletId());
+        operation.setOperationType(dto.getOperationType());
+        operation.setAmount(WalletOperations.signedAmount(dto.getOperationType(), dto.getAmount()));
+        operation.setBalanceAfter(balanceAfter);
+        operation.setWalletVersion(walletVersion);
+        operation.setIdempotencyKey(dto.getIdempotencyKey());
+        operation.setCreatedAt(Instant.now());
+        return operation;
+    }
+
+    /**
+     * Создает пару записей журнала для перевода. Ключ идемпотентности хранится в записи списания,
+     * поэтому повтор перевода возвращает состояние кошелька отправителя.
+     *
+     * @param dto    примененный перевод
+     * @param source кошелек отправителя после перевода
+     * @param target кошелек получателя после перевода
+     */
+    public static List<WalletOperation> transferEntries(WalletOperationDTO dto, Wallet source, Wallet target) {
+        Instant now = Instant.now();
+
+        WalletOperation debit = new WalletOperation();
+        debit.setWalletId(source.getId());
+        debit.setCounterpartyWalletId(target.getId());
+        debit.setOperationType(OperationType.TRANSFER);
+        debit.setAmount(dto.getAmount().negate());
+        debit.setBalanceAfter(source.getBalance());
+        debit.setWalletVersion(source.getVersion());
+        debit.setIdempotencyKey(dto.getIdempotencyKey());
+        debit.setCreatedAt(now);
+
+        WalletOperation credit = new WalletOperation();
+        credit.setWalletId(target.getId());
+        credit.setCounterpartyWalletId(source.getId());
+        credit.setOperationType(OperationType.TRANSFER);
+        credit.setAmount(dto.getAmount());
+        credit.setBalanceAfter(target.getBalance());
+        credit.setWalletVersion(target.getVersion());
+        credit.setCreatedAt(now);
+
+        return List.of(debit, credit);
+    }
+
+    public void record(WalletOperation operation) {
+        recordAll(List.of(operation));
+    }
+
+    /**
+     * Добавляет записи в журнал в текущей транзакции.
+     * Записи с ключом идемпотентности сбрасываются в БД сразу, чтобы конкурирующий запрос с тем же ключом
+     * завершился откатом всей транзакции, а не повторным списанием.
+     *
+     * @throws ConcurrentModificationException если операция с тем же ключом зафиксирована параллельно
+     */
+    public void recordAll(List<WalletOperation> operations) {
+        walletOperationRepository.saveAll(operations);
+        if (operations.stream().anyMatch(operation -> operation.getIdempotencyKey() != null)) {
+            try {
+                walletOperationRepository.flush();
+            } catch (DataIntegrityViolationException e) {
+                throw WalletOperations.duplicateIdempotencyKey();
+            }
+        }
+    }
+
+    /**
+     * Возвращает результат ранее выполненной операции с указанным ключом идемпотентности
+     */
+    public Optional<Wallet> findResult(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        return walletOperationRepository.findByIdempotencyKey(idempotencyKey).map(WalletLedger::toWallet);
+    }
+
+    /**
+     * Возвращает результаты ранее выполненных операций одним запросом
+     *
+     * @return результаты по ключу идемпотентности; ключи без выполненных операций отсутствуют
+     */
+    public Map<String, Wallet> findResults(Collection<String> idempotencyKeys) {
+        Map<String, Wallet> results = new HashMap<>();
+        if (idempotencyKeys.isEmpty()) {
+            return results;
+        }
+        for (WalletOperation operation : walletOperationRepository.findAllByIdempotencyKeyIn(idempotencyKeys)) {
+            results.put(operation.getIdempotencyKey(), toWallet(operation));
+        }
+        return results;
+    }
+
+    private static Wallet toWallet(WalletOperation operation) {
+        Wallet wallet = new Wallet();
+        wallet.setId(operation.getWalletId());
+        wallet.setBalance(operation.getBalanceAfter());
+        wallet.setVersion(operation.getWalletVersion());
+        return wallet;
+    }
+}
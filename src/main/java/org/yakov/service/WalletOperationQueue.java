@@ -0,0 +1,170 @@
+package org.yakov.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.yakov.dto.QueuedOperationDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.OperationType;
+import org.yakov.model.QueuedOperationStatus;
+import org.yakov.model.Wallet;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Очередь асинхронных операций в таблице wallet_operation_queue. Обработчики выбирают операции
+ * через FOR UPDATE SKIP LOCKED и не ожидают друг друга; выбранная операция остается за обработчиком
+ * на время аренды, после чего ее может выбрать другой обработчик.
+ */
+@Component
+public class WalletOperationQueue {
+
+    private static final String INSERT = """
+            INSERT INTO wallet_operation_queue
+                (id, wallet_id, operation_type, amount, target_wallet_id, idempotency_key, status, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, 'PENDING', ?)
+            ON CONFLICT (idempotency_key) DO NOTHING""";
+
+    private static final String CLAIM = """
+            UPDATE wallet_operation_queue
+            SET status = 'PROCESSING', claimed_at = ?, attempts = attempts + 1
+            WHERE id IN (
+                SELECT id FROM wallet_operation_queue
+                WHERE status = 'PENDING' OR (status = 'PROCESSING' AND claimed_at < ?)
+                ORDER BY created_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            RETURNING id, wallet_id, operation_type, amount, target_wallet_id, idempotency_key, attempts, created_at""";
+
+    private static final String COMPLETE = """
+            UPDATE wallet_operation_queue
+            SET status = ?, balance = ?, wallet_version = ?, error_code = ?, error_message = ?, completed_at = ?
+            WHERE id = ?""";
+
+    private static final String RELEASE =
+            "UPDATE wallet_operation_queue SET status = 'PENDING', claimed_at = NULL WHERE id = ?";
+
+    private static final String SELECT = """
+            SELECT id, wallet_id, status, balance, wallet_version, error_code, error_message, created_at, completed_at
+            FROM wallet_operation_queue""";
+
+    private static final String DELETE_COMPLETED =
+            "DELETE FROM wallet_operation_queue WHERE status IN ('SUCCEEDED', 'FAILED') AND completed_at < ?";
+
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 512;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletOperationQueue(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Добавляет операцию в очередь. Операция с уже принятым ключом идемпотентности повторно не добавляется
+     *
+     * @param dto операция с заполненным ключом идемпотентности
+     * @return принятая операция: новая или ранее принятая с тем же ключом
+     */
+    public QueuedOperationDTO add(WalletOperationDTO dto) {
+        UUID id = UUID.randomUUID();
+        Instant now = Instant.now();
+        int inserted = jdbcTemplate.update(INSERT, id, dto.getWalletId(), dto.getOperationType().name(), dto.getAmount(),
+                dto.getTargetWalletId(), dto.getIdempotencyKey(), Timestamp.from(now));
+        if (inserted == 1) {
+            return new QueuedOperationDTO(id, dto.getWalletId(), QueuedOperationStatus.PENDING, null, null, null, now, null);
+        }
+        return jdbcTemplate.query(SELECT + " WHERE idempotency_key = ?", STATUS_MAPPER, dto.getIdempotencyKey())
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Операция с ключом " + dto.getIdempotencyKey() + " не найдена"));
+    }
+
+    public Optional<QueuedOperationDTO> find(UUID operationId) {
+        return jdbcTemplate.query(SELECT + " WHERE id = ?", STATUS_MAPPER, operationId).stream().findFirst();
+    }
+
+    /**
+     * Выбирает ожидающие операции и операции с истекшей арендой в порядке поступления
+     */
+    public List<ClaimedOperation> claim(int limit, Duration lease) {
+        Instant now = Instant.now();
+        List<ClaimedOperation> claimed = jdbcTemplate.query(CLAIM, CLAIM_MAPPER,
+                Timestamp.from(now), Timestamp.from(now.minus(lease)), limit);
+        claimed.sort(Comparator.comparing(ClaimedOperation::createdAt));
+        return claimed;
+    }
+
+    public void succeed(UUID operationId, Wallet wallet) {
+        jdbcTemplate.update(COMPLETE, QueuedOperationStatus.SUCCEEDED.name(), wallet.getBalance(), wallet.getVersion(),
+                null, null, Timestamp.from(Instant.now()), operationId);
+    }
+
+    public void fail(UUID operationId, String errorCode, String message) {
+        String truncated = message != null && message.length() > MAX_ERROR_MESSAGE_LENGTH
+                ? message.substring(0, MAX_ERROR_MESSAGE_LENGTH)
+                : message;
+        jdbcTemplate.update(COMPLETE, QueuedOperationStatus.FAILED.name(), null, null,
+                errorCode, truncated, Timestamp.from(Instant.now()), operationId);
+    }
+
+    /**
+     * Возвращает операцию в очередь для повторной попытки
+     */
+    public void release(UUID operationId) {
+        jdbcTemplate.update(RELEASE, operationId);
+    }
+
+    /**
+     * @return количество удаленных завершенных операций
+     */
+    public int deleteCompletedBefore(Instant before) {
+        return jdbcTemplate.update(DELETE_COMPLETED, Timestamp.from(before));
+    }
+
+    /**
+     * Операция, выбранная обработчиком
+     *
+     * @param attempts номер попытки, включая текущую
+     */
+    public record ClaimedOperation(UUID id, WalletOperationDTO operation, int attempts, Instant createdAt) {
+    }
+
+    private static final RowMapper<ClaimedOperation> CLAIM_MAPPER = (rs, rowNum) -> new ClaimedOperation(
+            rs.getObject("id", UUID.class),
+            new WalletOperationDTO(
+                    rs.getObject("wallet_id", UUID.class),
+                    OperationType.valueOf(rs.getString("operation_type")),
+                    rs.getBigDecimal("amount"),
+                    rs.getString("idempotency_key"),
+                    rs.getObject("target_wallet_id", UUID.class)),
+            rs.getInt("attempts"),
+            rs.getTimestamp("created_at").toInstant());
+
+    private static final RowMapper<QueuedOperationDTO> STATUS_MAPPER = (rs, rowNum) -> {
+        QueuedOperationDTO dto = new QueuedOperationDTO();
+        dto.setOperationId(rs.getObject("id", UUID.class));
+        dto.setWalletId(rs.getObject("wallet_id", UUID.class));
+        dto.setStatus(QueuedOperationStatus.valueOf(rs.getString("status")));
+        dto.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+        Timestamp completedAt = rs.getTimestamp("completed_at");
+        dto.setCompletedAt(completedAt == null ? null : completedAt.toInstant());
+        if (dto.getStatus() == QueuedOperationStatus.SUCCEEDED) {
+            Wallet wallet = new Wallet();
+            wallet.setId(dto.getWalletId());
+            wallet.setBalance(rs.getBigDecimal("balance"));
+            wallet.setVersion(rs.getLong("wallet_version"));
+            dto.setWallet(wallet);
+        } else if (dto.getStatus() == QueuedOperationStatus.FAILED) {
+            dto.setErrorCode(rs.getString("error_code"));
+            dto.setMessage(rs.getString("error_message"));
+        }
+        return dto;
+    };
+}
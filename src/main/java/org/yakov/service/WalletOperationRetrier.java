@@ -0,0 +1,183 @@
+package org.yakov.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.RetryStatsDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.ConcurrentModificationException;
+import org.yakov.metrics.HotWalletTracker;
+import org.yakov.metrics.WalletMetrics;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Повторяет операцию при конфликте параллельного изменения кошелька.
+ * Каждая попытка выполняется в собственной транзакции, пауза между попытками выбирается случайно
+ * в пределах экспоненциально растущей границы, чтобы конкурирующие запросы не повторялись одновременно.
+ */
+@Component
+public class WalletOperationRetrier implements MeterBinder {
+
+    private static final int TOP_CONTENDED_WALLETS = 10;
+
+    private final WalletService walletService;
+    private final WalletConcurrencyLimiter walletConcurrencyLimiter;
+    private final WalletMetrics walletMetrics;
+    private final HotWalletTracker hotWalletTracker;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long timeBudgetNanos;
+    private final boolean queueing;
+
+    private final AtomicLongArray attemptsDistribution;
+    private final AtomicLong gaveUp = new AtomicLong();
+
+    public WalletOperationRetrier(WalletService walletService,
+                                  WalletConcurrencyLimiter walletConcurrencyLimiter,
+                                  WalletMetrics walletMetrics,
+                                  HotWalletTracker hotWalletTracker,
+                                  WalletProperties properties) {
+        WalletProperties.Retry retry = properties.getRetry();
+        this.walletService = walletService;
+        this.walletConcurrencyLimiter = walletConcurrencyLimiter;
+        this.walletMetrics = walletMetrics;
+        this.hotWalletTracker = hotWalletTracker;
+        this.maxAttempts = Math.max(1, retry.getMaxAttempts());
+        this.initialBackoffNanos = retry.getInitialBackoff().toNanos();
+        this.maxBackoffNanos = retry.getMaxBackoff().toNanos();
+        this.timeBudgetNanos = retry.getTimeBudget().toNanos();
+        this.queueing = properties.getExecution().isQueueing();
+        this.attemptsDistribution = new AtomicLongArray(maxAttempts);
+    }
+
+    /**
+     * Выполняет операцию, повторяя ее при {@link ConcurrentModificationException}
+     *
+     * @throws ConcurrentModificationException если конфликт сохраняется после всех попыток или по истечении времени
+     */
+    public Wallet processOperation(WalletOperationDTO dto) {
+        long started = System.nanoTime();
+        hotWalletTracker.operation(dto.getWalletId());
+        if (dto.getOperationType() == OperationType.TRANSFER) {
+            hotWalletTracker.operation(dto.getTargetWalletId());
+        }
+        Throwable error = null;
+        try {
+            return retry(dto, started);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            walletMetrics.recordOperation(dto.getOperationType(), error, System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("wallet.operation.retry.exhausted", gaveUp, AtomicLong::get)
+                .description("Операции, завершившиеся конфликтом после всех попыток")
+                .register(registry);
+    }
+
+    private Wallet retry(WalletOperationDTO dto, long started) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Внешняя транзакция после конфликта помечена для отката, повтор в ней невозможен
+            return attempt(dto);
+        }
+
+        long deadline = started + timeBudgetNanos;
+        int attempt = 1;
+        try {
+            while (true) {
+                try {
+                    return attempt(dto);
+                } catch (ConcurrentModificationException e) {
+                    hotWalletTracker.conflict(dto.getWalletId());
+                    walletMetrics.conflict(dto.getOperationType());
+                    long backoff = backoff(attempt);
+                    if (attempt >= maxAttempts || System.nanoTime() + backoff > deadline || !sleep(backoff)) {
+                        gaveUp.incrementAndGet();
+                        throw e;
+                    }
+                    attempt++;
+                }
+            }
+        } finally {
+            attemptsDistribution.incrementAndGet(attempt - 1);
+            walletMetrics.recordAttempts(attempt);
+        }
+    }
+
+    /**
+     * Место в ограничителе занимается только на время попытки и освобождается на время паузы.
+     * В режимах combining и group ограничитель не используется: вызывающий поток только ожидает результат
+     * пакета, соединения занимают потоки режима, а удержание места на время ожидания ограничило бы размер
+     * пакета количеством мест
+     */
+    private Wallet attempt(WalletOperationDTO dto) {
+        if (queueing) {
+            return execute(dto);
+        }
+        return walletConcurrencyLimiter.execute(() -> execute(dto));
+    }
+
+    private Wallet execute(WalletOperationDTO dto) {
+        long started = System.nanoTime();
+        Throwable error = null;
+        try {
+            return walletService.processOperation(dto);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            walletMetrics.recordExecution(dto.getOperationType(), error, System.nanoTime() - started);
+        }
+    }
+
+    public RetryStatsDTO stats() {
+        List<Long> distribution = new ArrayList<>(maxAttempts);
+        long operations = 0;
+        long attempts = 0;
+        for (int i = 0; i < maxAttempts; i++) {
+            long count = attemptsDistribution.get(i);
+            distribution.add(count);
+            operations += count;
+            attempts += count * (i + 1);
+        }
+
+        return new RetryStatsDTO(operations, operations - distribution.get(0), gaveUp.get(),
+                operations == 0 ? 0 : (double) attempts / operations, distribution,
+                hotWalletTracker.topConflicts(TOP_CONTENDED_WALLETS));
+    }
+
+    /**
+     * Пауза перед попыткой attempt + 1: случайное значение от нуля до initialBackoff * 2^(attempt - 1),
+     * но не более maxBackoff
+     */
+    private long backoff(int attempt) {
+        long bound = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private static boolean sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.yakov.service;
+
+import org.yakov.exception.ConcurrentModificationException;
+import org.yakov.exception.InsufficientFundsException;
+import org.yakov.exception.InvalidOperationTypeException;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.exception.WalletNotFoundException;
+import org.yakov.model.MinorUnits;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Общие правила изменения баланса, используемые всеми реализациями {@link WalletService}
+ */
+public final class WalletOperations {
+
+    /**
+     * Порядок захвата блокировок кошельков. Совпадает с порядком сортировки uuid в PostgreSQL
+     * (беззнаковое побайтовое сравнение), поэтому согласован с ORDER BY id в запросах блокировки.
+     */
+    public static final Comparator<UUID> LOCK_ORDER = (a, b) -> {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    private WalletOperations() {
+    }
+
+    public static void validateAmount(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Сумма должна быть положительным числом");
+        }
+    }
+
+    /**
+     * Применяет операцию к кошельку, изменяя его баланс. Сумма переводится в минимальные единицы один раз,
+     * дальнейшие сравнение и изменение баланса выполняются над long
+     *
+     * @throws InsufficientFundsException если недостаточно средств для снятия
+     * @throws InvalidOperationTypeException если указан неверный тип операции
+     * @throws RequestValidationException если сумма не переводится в минимальные единицы точно или баланс переполнится
+     */
+    public static void apply(Wallet wallet, OperationType operationType, BigDecimal amount) {
+        if (operationType == OperationType.WITHDRAW) {
+            long minor = MinorUnits.of(amount);
+            if (wallet.getBalanceMinor() < minor) {
+                throw insufficientFunds(amount);
+            }
+            wallet.setBalanceMinor(MinorUnits.subtract(wallet.getBalanceMinor(), minor));
+        } else if (operationType == OperationType.DEPOSIT) {
+            wallet.setBalanceMinor(MinorUnits.add(wallet.getBalanceMinor(), MinorUnits.of(amount)));
+        } else {
+            throw new InvalidOperationTypeException("Недопустимый тип операции: " + operationType);
+        }
+    }
+
+    /**
+     * Переводит сумму между кошельками. Оба кошелька должны быть заблокированы вызывающим
+     * в порядке {@link #LOCK_ORDER}.
+     *
+     * Оба новых баланса вычисляются до изменения кошельков, поэтому при ошибке не изменяется ни один из них.
+     *
+     * @throws InsufficientFundsException если на кошельке отправителя недостаточно средств
+     * @throws RequestValidationException если баланс получателя переполнится
+     */
+    public static void transfer(Wallet source, Wallet target, BigDecimal amount) {
+        long minor = MinorUnits.of(amount);
+        if (source.getBalanceMinor() < minor) {
+            throw insufficientFunds(amount);
+        }
+        long sourceBalance = MinorUnits.subtract(source.getBalanceMinor(), minor);
+        long targetBalance = MinorUnits.add(target.getBalanceMinor(), minor);
+        source.setBalanceMinor(sourceBalance);
+        target.setBalanceMinor(targetBalance);
+    }
+
+    /**
+     * Проверяет получателя перевода для вызывающих, минующих валидацию запроса
+     */
+    public static void validateTransferTarget(UUID walletId, UUID targetWalletId) {
+        if (targetWalletId == null || targetWalletId.equals(walletId)) {
+            throw new IllegalArgumentException("Для перевода необходимо указать кошелек получателя, отличный от кошелька отправителя");
+        }
+    }
+
+    /**
+     * Возвращает изменение баланса для операции: положительное для пополнения, отрицательное для снятия
+     *
+     * @throws InvalidOperationTypeException если указан неверный тип операции
+     */
+    public static BigDecimal signedAmount(OperationType operationType, BigDecimal amount) {
+        if (operationType == OperationType.WITHDRAW) {
+            return amount.negate();
+        } else if (operationType == OperationType.DEPOSIT) {
+            return amount;
+        }
+        throw new InvalidOperationTypeException("Недопустимый тип операции: " + operationType);
+    }
+
+    public static InsufficientFundsException insufficientFunds(BigDecimal amount) {
+        return new InsufficientFundsException("Недостаточно средств на кошельке для снятия " + amount);
+    }
+
+    /**
+     * Причина, по которой условное изменение баланса существующего кошелька не выполнено:
+     * списанию не хватило средств, зачисление превысило бы {@link MinorUnits#MAX_VALUE}
+     */
+    public static RuntimeException deltaRejected(OperationType operationType, BigDecimal amount) {
+        return operationType == OperationType.WITHDRAW ? insufficientFunds(amount) : MinorUnits.overflow();
+    }
+
+    public static WalletNotFoundException walletNotFound(UUID walletId) {
+        return new WalletNotFoundException("Кошелек с ID " + walletId + " не найден");
+    }
+
+    public static ConcurrentModificationException concurrentModification() {
+        return new ConcurrentModificationException("Кошелек был модифицирован другой транзакцией. Пожалуйста, повторите операцию.");
+    }
+
+    /**
+     * Повтор ключа идемпотентности внутри одного пакета: результат первой операции еще не зафиксирован,
+     * поэтому повтор отклоняется так же, как параллельный запрос с тем же ключом
+     */
+    public static ConcurrentModificationException duplicateIdempotencyKey() {
+        return new ConcurrentModificationException("Операция с таким ключом идемпотентности уже выполняется. Пожалуйста, повторите запрос.");
+    }
+
+    public static Wallet copyOf(Wallet wallet) {
+        Wallet copy = new Wallet();
+        copy.setId(wallet.getId());
+        copy.setBalanceMinor(wallet.getBalanceMinor());
+        copy.setVersion(wallet.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,131 @@
+package org.yakov.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletQueryResponseDTO;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.exception.WalletNotFoundException;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Чтение кошельков. При чтении нескольких кошельков кошельки из кэша возвращаются сразу, остальные загружаются
+ * запросами WHERE id IN по {@link WalletProperties.Query#getChunkSize()} идентификаторов
+ */
+@Service
+public class WalletQueryService {
+
+    private final WalletService walletService;
+    private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final WalletProperties.Query properties;
+    private final boolean memoryMode;
+
+    /**
+     * Транзакция для записи: соединение всегда берется из пула основного сервера, а не реплики
+     */
+    private final TransactionTemplate primaryTransaction;
+
+    public WalletQueryService(WalletService walletService,
+                              WalletRepository walletRepository,
+                              WalletCache walletCache,
+                              PlatformTransactionManager transactionManager,
+                              WalletProperties properties) {
+        this.walletService = walletService;
+        this.walletRepository = walletRepository;
+        this.walletCache = walletCache;
+        this.properties = properties.getQuery();
+        this.memoryMode = properties.getExecution().isMemory();
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Возвращает кошелек не старее указанной версии. Версия из ответа на операцию позволяет вызывающему
+     * увидеть собственное изменение: если кэш или реплика еще не содержат его, кошелек читается с основного сервера
+     *
+     * @param minVersion минимальная версия кошелька или null, если подойдет любая
+     * @throws WalletNotFoundException если кошелек не найден
+     */
+    public Wallet get(UUID walletId, Long minVersion) {
+        Wallet wallet = walletService.get(walletId);
+        if (minVersion == null || memoryMode || wallet.getVersion() >= minVersion) {
+            return wallet;
+        }
+        Wallet primary = primaryTransaction.execute(status -> walletRepository.findById(walletId))
+                .orElseThrow(() -> WalletOperations.walletNotFound(walletId));
+        walletCache.put(primary);
+        return primary;
+    }
+
+    /**
+     * Возвращает найденные кошельки в порядке запроса; повторяющиеся идентификаторы учитываются один раз
+     *
+     * @throws RequestValidationException если запрос превышает допустимое количество кошельков
+     */
+    public WalletQueryResponseDTO find(List<UUID> walletIds) {
+        if (walletIds.size() > properties.getMaxIds()) {
+            throw new RequestValidationException("Запрос не может содержать более " + properties.getMaxIds() + " кошельков");
+        }
+        LinkedHashSet<UUID> ids = new LinkedHashSet<>(walletIds);
+        Map<UUID, Wallet> found = memoryMode ? findInEngine(ids) : findInDatabase(ids);
+
+        List<Wallet> wallets = new ArrayList<>(found.size());
+        List<UUID> missingIds = new ArrayList<>();
+        for (UUID id : ids) {
+            Wallet wallet = found.get(id);
+            if (wallet != null) {
+                wallets.add(wallet);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new WalletQueryResponseDTO(wallets, missingIds);
+    }
+
+    private Map<UUID, Wallet> findInDatabase(LinkedHashSet<UUID> ids) {
+        Map<UUID, Wallet> found = new HashMap<>();
+        List<UUID> misses = new ArrayList<>();
+        for (UUID id : ids) {
+            Optional<Wallet> cached = walletCache.find(id);
+            if (cached.isPresent()) {
+                found.put(id, cached.get());
+            } else {
+                misses.add(id);
+            }
+        }
+        for (int from = 0; from < misses.size(); from += properties.getChunkSize()) {
+            List<UUID> chunk = misses.subList(from, Math.min(from + properties.getChunkSize(), misses.size()));
+            for (Wallet wallet : walletRepository.findAllById(chunk)) {
+                walletCache.put(wallet);
+                found.put(wallet.getId(), wallet);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * В режиме memory состояние в БД отстает от движка, поэтому кошельки читаются из движка
+     */
+    private Map<UUID, Wallet> findInEngine(LinkedHashSet<UUID> ids) {
+        Map<UUID, Wallet> found = new HashMap<>();
+        for (UUID id : ids) {
+            try {
+                found.put(id, walletService.get(id));
+            } catch (WalletNotFoundException e) {
+                // Кошелек попадает в missingIds
+            }
+        }
+        return found;
+    }
+}
@@ -1,58 +1,65 @@
 package org.yakov.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.yakov.cache.WalletCache;
 import org.yakov.dto.WalletOperationDTO;
-import org.yakov.exception.ConcurrentModificationException;
-import org.yakov.exception.InsufficientFundsException;
-import org.yakov.exception.InvalidOperationTypeException;
-import org.yakov.exception.WalletNotFoundException;
 import org.yakov.model.OperationType;
 import org.yakov.model.Wallet;
 import org.yakov.repository.WalletRepository;
 
-import java.math.BigDecimal;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.execution.mode", havingValue = "jpa", matchIfMissing = true)
 public class WalletServiceImpl implements WalletService {
 
     private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final WalletLedger walletLedger;
+    private final WalletTransferService walletTransferService;
 
     @Override
     @Transactional
     public Wallet processOperation(WalletOperationDTO dto) {
-        Wallet wallet = walletRepository.findById(dto.getWalletId())
-                .orElseThrow(() -> new WalletNotFoundException("Кошелек с ID " + dto.getWalletId() + " не найден"));
-
-        BigDecimal amount = dto.getAmount();
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Сумма должна быть положительным числом");
+        if (dto.getOperationType() == OperationType.TRANSFER) {
+            return walletTransferService.transfer(dto);
         }
-
-        if (dto.getOperationType() == OperationType.WITHDRAW) {
-            if (wallet.getBalance().compareTo(amount) < 0) {
-                throw new InsufficientFundsException("Недостаточно средств на кошельке для снятия " + amount);
-            }
-            wallet.setBalance(wallet.getBalance().subtract(amount));
-        } else if (dto.getOperationType() == OperationType.DEPOSIT) {
-            wallet.setBalance(wallet.getBalance().add(amount));
-        } else {
-            throw new InvalidOperationTypeException("Недопустимый тип операции: " + dto.getOperationType());
+        Optional<Wallet> replay = walletLedger.findResult(dto.getIdempotencyKey());
+        if (replay.isPresent()) {
+            return replay.get();
         }
 
+        Wallet wallet = walletRepository.findById(dto.getWalletId())
+                .orElseThrow(() -> WalletOperations.walletNotFound(dto.getWalletId()));
+
+        WalletOperations.validateAmount(dto.getAmount());
+        WalletOperations.apply(wallet, dto.getOperationType(), dto.getAmount());
+
         try {
-            return walletRepository.save(wallet);
+            Wallet saved = walletRepository.save(wallet);
+            walletRepository.flush();
+            walletLedger.record(WalletLedger.entry(dto, saved.getBalance(), saved.getVersion()));
+            walletCache.putAfterCommit(saved);
+            return saved;
         } catch (org.springframework.orm.ObjectOptimisticLockingFailureException e) {
-            throw new ConcurrentModificationException("Кошелек был модифицирован другой транзакцией. Пожалуйста, повторите операцию.");
+            throw WalletOperations.concurrentModification();
         }
     }
 
     @Override
     public Wallet get(UUID uuid) {
-        return walletRepository.findById(uuid)
-                .orElseThrow(() -> new WalletNotFoundException("Кошелек с ID " + uuid + " не найден"));
+        Optional<Wallet> cached = walletCache.find(uuid);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Wallet wallet = walletRepository.findById(uuid)
+                .orElseThrow(() -> WalletOperations.walletNotFound(uuid));
+        walletCache.put(wallet);
+        return wallet;
     }
 }
@@ -0,0 +1,211 @@
+package org.yakov.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletBalanceDTO;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Снимки балансов и баланс кошелька на момент времени.
+ * Контрольная точка сохраняет баланс только тех кошельков, у которых в журнале {@code wallet_operations} есть операции
+ * после предыдущей точки; первая точка сохраняет баланс всех кошельков. Точка строится чтением журнала и таблицы
+ * кошельков без блокировок, поэтому не задерживает изменение балансов.
+ *
+ * <p>Баланс на момент T - ближайший снимок не позже T и сумма операций после снимка до T включительно.
+ * Если снимка до T нет, из текущего баланса вычитаются операции после T.
+ *
+ * <p>Время операции назначается до фиксации транзакции, поэтому плановая точка не переходит начало самой ранней
+ * открытой транзакции базы: операции, которые еще могут быть зафиксированы, получат время позже точки.
+ * Отставание settle-delay покрывает расхождение часов приложения и базы. В режиме memory точка, кроме того,
+ * не переходит время самой ранней операции, еще не перенесенной движком в PostgreSQL.
+ */
+@Slf4j
+@Service
+public class WalletSnapshotService implements SmartLifecycle {
+
+    /**
+     * Ключ рекомендательной блокировки: контрольную точку строит один экземпляр сервиса
+     */
+    private static final long CHECKPOINT_LOCK = 0x77616c6c6574L;
+
+    private static final String LAST_CHECKPOINT = "SELECT max(snapshot_at) FROM wallet_snapshot_checkpoints";
+
+    private static final String SNAPSHOT_ALL = """
+            INSERT INTO wallet_balance_snapshots (wallet_id, snapshot_at, balance)
+            SELECT w.id, ?, w.balance - COALESCE(sum(o.amount), 0)
+            FROM wallets w
+            LEFT JOIN wallet_operations o ON o.wallet_id = w.id AND o.created_at > ?
+            GROUP BY w.id, w.balance""";
+
+    private static final String SNAPSHOT_CHANGED = """
+            INSERT INTO wallet_balance_snapshots (wallet_id, snapshot_at, balance)
+            SELECT DISTINCT ON (wallet_id) wallet_id, ?, balance_after
+            FROM wallet_operations
+            WHERE created_at > ? AND created_at <= ?
+            ORDER BY wallet_id, wallet_version DESC, id DESC""";
+
+    /**
+     * Начало самой ранней открытой транзакции других сеансов этой базы. Начало чужих сеансов видно роли
+     * с pg_read_all_stats или сеансам той же роли, поэтому все экземпляры приложения подключаются одной ролью
+     */
+    private static final String OLDEST_TRANSACTION = """
+            SELECT least(now(), min(xact_start))
+            FROM pg_stat_activity
+            WHERE datname = current_database() AND pid <> pg_backend_pid() AND backend_type = 'client backend'""";
+
+    private static final String INSERT_CHECKPOINT =
+            "INSERT INTO wallet_snapshot_checkpoints (snapshot_at, wallets, created_at) VALUES (?, ?, now())";
+
+    private static final String BALANCE_FROM_SNAPSHOT = """
+            SELECT s.snapshot_at, s.balance + COALESCE((
+                SELECT sum(o.amount) FROM wallet_operations o
+                WHERE o.wallet_id = s.wallet_id AND o.created_at > s.snapshot_at AND o.created_at <= ?), 0) AS balance
+            FROM wallet_balance_snapshots s
+            WHERE s.wallet_id = ? AND s.snapshot_at <= ?
+            ORDER BY s.snapshot_at DESC
+            LIMIT 1""";
+
+    private static final String BALANCE_FROM_CURRENT = """
+            SELECT w.balance - COALESCE((
+                SELECT sum(o.amount) FROM wallet_operations o
+                WHERE o.wallet_id = w.id AND o.created_at > ?), 0)
+            FROM wallets w
+            WHERE w.id = ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final WalletProperties.Snapshot properties;
+    private final ObjectProvider<InMemoryWalletService> inMemoryWalletService;
+    private ScheduledExecutorService scheduler;
+
+    public WalletSnapshotService(DataSource dataSource,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectProvider<InMemoryWalletService> inMemoryWalletService,
+                                 WalletProperties properties) {
+        this.properties = properties.getSnapshot();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transaction = new TransactionTemplate(transactionManager);
+        // Построение первой точки читает все кошельки и может длиться дольше транзакций операций
+        this.transaction.setTimeout((int) Math.max(1, this.properties.getInterval().toSeconds()));
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.inMemoryWalletService = inMemoryWalletService;
+    }
+
+    /**
+     * Сохраняет снимки балансов на указанный момент. Точка не создается, если другой экземпляр сервиса
+     * строит точку в это же время или момент не позже последней точки
+     *
+     * @param snapshotAt момент точки; операции, зафиксированные после построения точки, должны иметь более позднее время
+     * @return количество сохраненных снимков или -1, если точка не создана
+     */
+    public int checkpoint(Instant snapshotAt) {
+        OffsetDateTime at = snapshotAt.atOffset(ZoneOffset.UTC);
+        Integer saved = transaction.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, CHECKPOINT_LOCK);
+            if (!Boolean.TRUE.equals(locked)) {
+                return -1;
+            }
+            OffsetDateTime last = jdbcTemplate.queryForObject(LAST_CHECKPOINT, OffsetDateTime.class);
+            if (last != null && !last.isBefore(at)) {
+                return -1;
+            }
+            int wallets = last == null
+                    ? jdbcTemplate.update(SNAPSHOT_ALL, at, at)
+                    : jdbcTemplate.update(SNAPSHOT_CHANGED, at, last, at);
+            jdbcTemplate.update(INSERT_CHECKPOINT, at, wallets);
+            return wallets;
+        });
+        return saved == null ? -1 : saved;
+    }
+
+    /**
+     * @throws org.yakov.exception.WalletNotFoundException если кошелек не найден
+     */
+    public WalletBalanceDTO balanceAt(UUID walletId, Instant at) {
+        OffsetDateTime time = at.atOffset(ZoneOffset.UTC);
+        return readOnlyTransaction.execute(status -> {
+            List<WalletBalanceDTO> fromSnapshot = jdbcTemplate.query(BALANCE_FROM_SNAPSHOT,
+                    (rs, rowNum) -> new WalletBalanceDTO(walletId, rs.getBigDecimal("balance"), at,
+                            rs.getObject("snapshot_at", OffsetDateTime.class).toInstant()),
+                    time, walletId, time);
+            if (!fromSnapshot.isEmpty()) {
+                return fromSnapshot.get(0);
+            }
+            List<BigDecimal> fromCurrent = jdbcTemplate.queryForList(BALANCE_FROM_CURRENT, BigDecimal.class, time, walletId);
+            if (fromCurrent.isEmpty()) {
+                throw WalletOperations.walletNotFound(walletId);
+            }
+            return new WalletBalanceDTO(walletId, fromCurrent.get(0), at, null);
+        });
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("wallet-snapshot-"));
+        if (properties.isEnabled()) {
+            long interval = properties.getInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::scheduledCheckpoint, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    private void scheduledCheckpoint() {
+        try {
+            // Транзакция на запись выполняется на основном сервере, где видны транзакции операций
+            OffsetDateTime oldest = transaction.execute(status -> jdbcTemplate.queryForObject(OLDEST_TRANSACTION, OffsetDateTime.class));
+            Instant snapshotAt = oldest.toInstant().minus(properties.getSettleDelay());
+            InMemoryWalletService engine = inMemoryWalletService.getIfAvailable();
+            if (engine != null) {
+                // Время в PostgreSQL хранится с точностью до микросекунды; операция с этим временем в точку не попадает
+                Instant unsynced = engine.oldestUnsynced()
+                        .map(createdAt -> createdAt.truncatedTo(ChronoUnit.MICROS).minus(1, ChronoUnit.MICROS))
+                        .orElse(snapshotAt);
+                snapshotAt = unsynced.isBefore(snapshotAt) ? unsynced : snapshotAt;
+            }
+            int saved = checkpoint(snapshotAt);
+            if (saved >= 0) {
+                log.debug("Контрольная точка балансов: сохранено {} снимков", saved);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ошибка построения контрольной точки балансов", e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.yakov.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Service;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.dto.WalletOperationResultDTO;
+import org.yakov.exception.ErrorCode;
+import org.yakov.model.BatchMode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Потоковая загрузка операций в формате NDJSON.
+ * Записи читаются из тела запроса по мере поступления, применяются порциями фиксированного размера
+ * и сразу же записываются в ответ, поэтому потребление памяти не зависит от объема входных данных.
+ * Общий для всех загрузок семафор ограничивает число одновременных транзакций.
+ */
+@Service
+public class WalletStreamService {
+
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+
+    private final WalletBatchService walletBatchService;
+    private final Validator validator;
+    private final ObjectReader operationReader;
+    private final ObjectWriter resultWriter;
+    private final WalletProperties.Stream properties;
+    private final Semaphore inFlight;
+
+    public WalletStreamService(WalletBatchService walletBatchService,
+                               Validator validator,
+                               ObjectMapper objectMapper,
+                               WalletProperties properties) {
+        this.walletBatchService = walletBatchService;
+        this.validator = validator;
+        this.operationReader = objectMapper.readerFor(WalletOperationDTO.class);
+        this.resultWriter = objectMapper.writerFor(WalletOperationResultDTO.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.properties = properties.getStream();
+        if (this.properties.getChunkSize() < 1 || this.properties.getChunkSize() > properties.getBatch().getMaxSize()) {
+            throw new IllegalStateException("Размер порции wallet.stream.chunk-size должен быть от 1 до wallet.batch.max-size ("
+                    + properties.getBatch().getMaxSize() + ")");
+        }
+        this.inFlight = new Semaphore(this.properties.getMaxInFlight(), true);
+    }
+
+    /**
+     * Применяет операции из входного потока и пишет результат по каждой записи в выходной поток
+     *
+     * @param input  операции, по одной JSON-записи на строку
+     * @param output результаты в порядке следования записей, по одной JSON-записи на строку
+     */
+    public void process(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        StringBuilder line = new StringBuilder();
+        List<WalletOperationResultDTO> parsed = new ArrayList<>(properties.getChunkSize());
+        List<WalletOperationDTO> operations = new ArrayList<>(properties.getChunkSize());
+        int index = 0;
+
+        boolean more = true;
+        while (more) {
+            more = readLine(reader, line);
+            String record = line.toString();
+            if (record.isBlank()) {
+                continue;
+            }
+
+            WalletOperationResultDTO failure = null;
+            WalletOperationDTO dto = null;
+            if (record.length() > properties.getMaxLineLength()) {
+                failure = WalletOperationResultDTO.failure(index, null, ErrorCode.VALIDATION_ERROR,
+                        "Ошибка валидации запроса: длина записи превышает " + properties.getMaxLineLength() + " символов");
+            } else {
+                try {
+                    dto = operationReader.readValue(record);
+                    failure = validate(index, dto);
+                } catch (JsonProcessingException e) {
+                    failure = WalletOperationResultDTO.failure(index, null, ErrorCode.INVALID_JSON, "Некорректный формат JSON запроса");
+                }
+            }
+
+            parsed.add(failure);
+            if (failure == null) {
+                operations.add(dto);
+            }
+            index++;
+
+            if (parsed.size() == properties.getChunkSize()) {
+                flushChunk(parsed, operations, index - parsed.size(), output);
+            }
+        }
+        flushChunk(parsed, operations, index - parsed.size(), output);
+    }
+
+    private WalletOperationResultDTO validate(int index, WalletOperationDTO dto) {
+        Set<ConstraintViolation<WalletOperationDTO>> violations = validator.validate(dto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return WalletOperationResultDTO.failure(index, dto.getWalletId(), ErrorCode.VALIDATION_ERROR,
+                "Ошибка валидации запроса: " + violations.iterator().next().getMessage());
+    }
+
+    private void flushChunk(List<WalletOperationResultDTO> parsed,
+                            List<WalletOperationDTO> operations,
+                            int firstIndex,
+                            OutputStream output) throws IOException {
+        if (parsed.isEmpty()) {
+            return;
+        }
+
+        List<WalletOperationResultDTO> applied = operations.isEmpty() ? List.of() : applyChunk(operations);
+        int next = 0;
+        for (int i = 0; i < parsed.size(); i++) {
+            WalletOperationResultDTO result = parsed.get(i);
+            if (result == null) {
+                result = applied.get(next++);
+            }
+            result.setIndex(firstIndex + i);
+            resultWriter.writeValue(output, result);
+            output.write(LINE_SEPARATOR);
+        }
+        output.flush();
+
+        parsed.clear();
+        operations.clear();
+    }
+
+    private List<WalletOperationResultDTO> applyChunk(List<WalletOperationDTO> operations) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка операций прервана");
+        }
+        try {
+            WalletBatchResponseDTO response = walletBatchService.process(operations, BatchMode.PER_ITEM);
+            return response.getResults();
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Читает строку в буфер, не накапливая больше {@code maxLineLength + 1} символов:
+     * остаток слишком длинной строки пропускается
+     *
+     * @return false, если достигнут конец потока
+     */
+    private boolean readLine(BufferedReader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int ch;
+        while ((ch = reader.read()) != -1) {
+            if (ch == '\n') {
+                return true;
+            }
+            if (line.length() <= properties.getMaxLineLength() && ch != '\r') {
+                line.append((char) ch);
+            }
+        }
+        return false;
+    }
+}
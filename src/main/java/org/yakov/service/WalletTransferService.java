@@ -0,0 +1,63 @@
+package org.yakov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.yakov.cache.WalletCache;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Перевод между кошельками в одной транзакции.
+ * Обе строки блокируются в порядке {@link WalletOperations#LOCK_ORDER} независимо от направления перевода,
+ * поэтому встречные переводы между одной парой кошельков ожидают друг друга, а не взаимоблокируются.
+ * Используется всеми реализациями {@link WalletService}.
+ */
+@Service
+@RequiredArgsConstructor
+public class WalletTransferService {
+
+    private final WalletRepository walletRepository;
+    private final WalletCache walletCache;
+    private final WalletLedger walletLedger;
+
+    /**
+     * Выполняет перевод
+     *
+     * @return кошелек отправителя после перевода
+     */
+    @Transactional
+    public Wallet transfer(WalletOperationDTO dto) {
+        WalletOperations.validateAmount(dto.getAmount());
+        WalletOperations.validateTransferTarget(dto.getWalletId(), dto.getTargetWalletId());
+        Optional<Wallet> replay = walletLedger.findResult(dto.getIdempotencyKey());
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+
+        UUID sourceId = dto.getWalletId();
+        UUID targetId = dto.getTargetWalletId();
+        boolean sourceFirst = WalletOperations.LOCK_ORDER.compare(sourceId, targetId) < 0;
+        Wallet first = lock(sourceFirst ? sourceId : targetId);
+        Wallet second = lock(sourceFirst ? targetId : sourceId);
+        Wallet source = sourceFirst ? first : second;
+        Wallet target = sourceFirst ? second : first;
+
+        WalletOperations.transfer(source, target, dto.getAmount());
+        walletRepository.flush();
+
+        walletLedger.recordAll(WalletLedger.transferEntries(dto, source, target));
+        walletCache.putAfterCommit(source);
+        walletCache.putAfterCommit(target);
+        return source;
+    }
+
+    private Wallet lock(UUID walletId) {
+        return walletRepository.findByIdForUpdate(walletId)
+                .orElseThrow(() -> WalletOperations.walletNotFound(walletId));
+    }
+}
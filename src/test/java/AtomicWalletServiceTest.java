@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.yakov.cache.WalletCache;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.InsufficientFundsException;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.exception.WalletNotFoundException;
+import org.yakov.model.MinorUnits;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+import org.yakov.repository.WalletRepository;
+import org.yakov.service.AtomicWalletService;
+import org.yakov.service.WalletLedger;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AtomicWalletServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletCache walletCache;
+
+    @Mock
+    private WalletLedger walletLedger;
+
+    @InjectMocks
+    private AtomicWalletService walletService;
+
+    @Test
+    public void testProcessWithdraw_Success() {
+        UUID walletId = UUID.randomUUID();
+        Wallet updatedWallet = new Wallet();
+        updatedWallet.setId(walletId);
+        updatedWallet.setBalance(new BigDecimal("500.00"));
+        updatedWallet.setVersion(1L);
+
+        when(walletRepository.applyDelta(walletId, new BigDecimal("-500.00"), MinorUnits.MAX_VALUE)).thenReturn(Optional.of(updatedWallet));
+
+        Wallet result = walletService.processOperation(
+                new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("500.00")));
+
+        assertEquals(new BigDecimal("500.00"), result.getBalance());
+        verify(walletLedger).record(any(WalletOperation.class));
+        verify(walletCache).putAfterCommit(updatedWallet);
+        verify(walletRepository, never()).findById(walletId);
+        verify(walletRepository, never()).existsById(walletId);
+    }
+
+    @Test
+    public void testProcessWithdraw_InsufficientFunds() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.applyDelta(walletId, new BigDecimal("-500.00"), MinorUnits.MAX_VALUE)).thenReturn(Optional.empty());
+        when(walletRepository.existsById(walletId)).thenReturn(true);
+
+        assertThrows(InsufficientFundsException.class, () -> walletService.processOperation(
+                new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("500.00"))));
+    }
+
+    @Test
+    public void testProcessDeposit_BalanceOverflow() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.applyDelta(walletId, new BigDecimal("500.00"), MinorUnits.MAX_VALUE)).thenReturn(Optional.empty());
+        when(walletRepository.existsById(walletId)).thenReturn(true);
+
+        assertThrows(RequestValidationException.class, () -> walletService.processOperation(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("500.00"))));
+    }
+
+    @Test
+    public void testProcessOperation_WalletNotFound() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.applyDelta(walletId, new BigDecimal("500.00"), MinorUnits.MAX_VALUE)).thenReturn(Optional.empty());
+        when(walletRepository.existsById(walletId)).thenReturn(false);
+
+        assertThrows(WalletNotFoundException.class, () -> walletService.processOperation(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("500.00"))));
+    }
+}
@@ -0,0 +1,136 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.InsufficientFundsException;
+import org.yakov.exception.WalletNotFoundException;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+import org.yakov.service.WalletLedger;
+import org.yakov.service.WalletTransferService;
+import org.yakov.service.CombiningWalletService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CombiningWalletServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletLedger walletLedger;
+
+    @Mock
+    private WalletTransferService walletTransferService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CombiningWalletService walletService;
+
+    @BeforeEach
+    public void setUp() {
+        walletService = new CombiningWalletService(walletRepository, new WalletCache(new WalletProperties()), walletLedger, walletTransferService, transactionManager, new WalletProperties());
+    }
+
+    @Test
+    public void testConcurrentWithdrawals_EachCallerGetsOwnResult() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(new BigDecimal("100.00"));
+        wallet.setVersion(0L);
+
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.save(wallet)).thenReturn(wallet);
+
+        int callers = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Wallet>> futures = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return walletService.processOperation(
+                        new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("10.00")));
+            }));
+        }
+        start.countDown();
+
+        int succeeded = 0;
+        int insufficient = 0;
+        for (Future<Wallet> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                succeeded++;
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof InsufficientFundsException);
+                insufficient++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(10, succeeded);
+        assertEquals(10, insufficient);
+        assertEquals(0, wallet.getBalance().compareTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    public void testProcessOperation_WalletNotFound() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.empty());
+
+        WalletOperationDTO dto = new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("500.00"));
+
+        assertThrows(WalletNotFoundException.class, () -> walletService.processOperation(dto));
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+
+    @Test
+    public void testProcessOperation_RejectedAfterDestroy() throws Exception {
+        walletService.destroy();
+
+        WalletOperationDTO dto = new WalletOperationDTO(UUID.randomUUID(), OperationType.DEPOSIT, new BigDecimal("500.00"));
+
+        assertThrows(IllegalStateException.class, () -> walletService.processOperation(dto));
+        verifyNoInteractions(walletRepository);
+    }
+
+    @Test
+    public void testProcessOperation_ReplayDoesNotLockWallet() {
+        UUID walletId = UUID.randomUUID();
+        Wallet recorded = new Wallet();
+        recorded.setId(walletId);
+        recorded.setBalance(new BigDecimal("150.00"));
+        when(walletLedger.findResults(List.of("key-1"))).thenReturn(Map.of("key-1", recorded));
+
+        Wallet result = walletService.processOperation(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("50.00"), "key-1", null));
+
+        assertEquals(new BigDecimal("150.00"), result.getBalance());
+        verify(walletRepository, never()).findByIdForUpdate(any());
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+}
@@ -0,0 +1,59 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.yakov.exception.GlobalExceptionHandler;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.exception.WalletNotFoundException;
+import org.yakov.service.WalletOperations;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testErrorBody_MatchesErrorResponseFormat() throws Exception {
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/v1/wallets/\"x\""));
+        String message = "Кавычки \" и \\, перевод\nстроки, \u0001 и 💸";
+
+        ResponseEntity<byte[]> response = handler.handleRequestValidationException(new RequestValidationException(message), request);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        JsonNode body = objectMapper.readTree(response.getBody());
+        assertEquals("VALIDATION_ERROR", body.get("errorCode").asText());
+        assertEquals("Ошибка валидации запроса: " + message, body.get("message").asText());
+        assertEquals(400, body.get("status").asInt());
+        assertEquals("/api/v1/wallets/\"x\"", body.get("path").asText());
+        LocalDateTime timestamp = LocalDateTime.parse(body.get("timestamp").asText(),
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        assertTrue(Math.abs(ChronoUnit.SECONDS.between(timestamp, LocalDateTime.now())) <= 1);
+    }
+
+    @Test
+    public void testDomainExceptions_HaveNoStackTrace() throws Exception {
+        WalletNotFoundException ex = WalletOperations.walletNotFound(UUID.randomUUID());
+
+        assertEquals(0, ex.getStackTrace().length);
+        assertEquals(0, WalletOperations.concurrentModification().getStackTrace().length);
+
+        ResponseEntity<byte[]> response = handler.handleWalletNotFoundException(ex,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/api/v1/wallets")));
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals(ex.getMessage(), objectMapper.readTree(response.getBody()).get("message").asText());
+    }
+}
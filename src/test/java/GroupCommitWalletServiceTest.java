@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.dto.WalletOperationResultDTO;
+import org.yakov.exception.InsufficientFundsException;
+import org.yakov.model.BatchMode;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+import org.yakov.service.GroupCommitWalletService;
+import org.yakov.service.WalletBatchService;
+import org.yakov.service.WalletOperations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class GroupCommitWalletServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletBatchService walletBatchService;
+
+    private GroupCommitWalletService walletService;
+
+    private final AtomicInteger transactions = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        WalletProperties properties = new WalletProperties();
+        properties.getGroupCommit().setWindow(Duration.ofMillis(50));
+        properties.getGroupCommit().setMaxSize(16);
+        walletService = new GroupCommitWalletService(walletRepository, new WalletCache(properties), walletBatchService, properties);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        walletService.destroy();
+    }
+
+    @Test
+    public void testConcurrentOperations_SharedTransactionWithOwnResults() throws Exception {
+        when(walletBatchService.processGroup(any(), any())).thenAnswer(invocation -> {
+            transactions.incrementAndGet();
+            List<WalletOperationDTO> operations = invocation.getArgument(0);
+            RuntimeException[] errors = invocation.getArgument(1);
+            List<WalletOperationResultDTO> results = new ArrayList<>();
+            for (int i = 0; i < operations.size(); i++) {
+                WalletOperationDTO dto = operations.get(i);
+                if (dto.getAmount().compareTo(new BigDecimal("100")) > 0) {
+                    errors[i] = WalletOperations.insufficientFunds(dto.getAmount());
+                    results.add(WalletOperationResultDTO.failure(i, dto.getWalletId(), errors[i]));
+                } else {
+                    results.add(WalletOperationResultDTO.success(i, wallet(dto.getWalletId(), dto.getAmount())));
+                }
+            }
+            return new WalletBatchResponseDTO(BatchMode.PER_ITEM, true, 0, 0, results);
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<UUID> walletIds = new ArrayList<>();
+        List<Future<Wallet>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            UUID walletId = UUID.randomUUID();
+            walletIds.add(walletId);
+            String amount = i == 7 ? "500" : Integer.toString(i + 1);
+            futures.add(callers.submit(() -> walletService.processOperation(operation(walletId, amount))));
+        }
+
+        for (int i = 0; i < 16; i++) {
+            if (i == 7) {
+                Future<Wallet> failed = futures.get(i);
+                Exception e = assertThrows(Exception.class, failed::get);
+                assertTrue(e.getCause() instanceof InsufficientFundsException);
+                continue;
+            }
+            Wallet wallet = futures.get(i).get();
+            assertEquals(walletIds.get(i), wallet.getId());
+            assertEquals(BigDecimal.valueOf((i + 1) * 100L, 2), wallet.getBalance());
+        }
+        callers.shutdown();
+        assertTrue(transactions.get() < 16);
+    }
+
+    private static WalletOperationDTO operation(UUID walletId, String amount) {
+        return new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal(amount), null, null);
+    }
+
+    private static Wallet wallet(UUID walletId, BigDecimal balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(balance);
+        wallet.setVersion(1L);
+        return wallet;
+    }
+}
@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.Test;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.HotWalletDTO;
+import org.yakov.dto.HotWalletsDTO;
+import org.yakov.metrics.HotWalletTracker;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HotWalletTrackerTest {
+
+    private final UUID hottest = UUID.randomUUID();
+    private final UUID hot = UUID.randomUUID();
+
+    @Test
+    public void testTop_FindsHotWalletsAmongManyColdOnes() {
+        HotWalletTracker tracker = new HotWalletTracker(properties());
+        for (int i = 0; i < 20_000; i++) {
+            tracker.operation(UUID.randomUUID());
+            if (i % 10 == 0) {
+                tracker.operation(hottest);
+            }
+            if (i % 20 == 0) {
+                tracker.operation(hot);
+                tracker.conflict(hot);
+            }
+        }
+
+        HotWalletsDTO top = tracker.top(2);
+
+        List<HotWalletDTO> byOperations = top.getByOperations();
+        assertEquals(2, byOperations.size());
+        assertEquals(hottest, byOperations.get(0).getWalletId());
+        assertEquals(hot, byOperations.get(1).getWalletId());
+        assertTrue(byOperations.get(0).getCount() >= 2_000);
+        assertTrue(byOperations.get(0).getRatePerSecond() > 0);
+        assertEquals(hot, top.getByConflicts().get(0).getWalletId());
+        assertEquals(1_000L, tracker.topConflicts(1).get(hot));
+    }
+
+    @Test
+    public void testTop_CountsConcurrentUpdates() throws InterruptedException {
+        HotWalletTracker tracker = new HotWalletTracker(properties());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    tracker.operation(hottest);
+                    tracker.operation(UUID.randomUUID());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        HotWalletDTO top = tracker.top(1).getByOperations().get(0);
+        assertEquals(hottest, top.getWalletId());
+        assertTrue(top.getCount() >= 80_000);
+    }
+
+    @Test
+    public void testTop_Disabled() {
+        WalletProperties properties = properties();
+        properties.getHotWallets().setEnabled(false);
+        HotWalletTracker tracker = new HotWalletTracker(properties);
+
+        tracker.operation(hottest);
+        tracker.conflict(hottest);
+
+        assertTrue(tracker.top(null).getByOperations().isEmpty());
+        assertTrue(tracker.top(null).getByConflicts().isEmpty());
+    }
+
+    private static WalletProperties properties() {
+        WalletProperties properties = new WalletProperties();
+        properties.getHotWallets().setSketchWidth(1024);
+        properties.getHotWallets().setCandidates(64);
+        return properties;
+    }
+}
@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.Test;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.model.MinorUnits;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletOperations;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MinorUnitsTest {
+
+    @Test
+    public void testConversion_IsExact() {
+        assertEquals(1234L, MinorUnits.of(new BigDecimal("12.34")));
+        assertEquals(1200L, MinorUnits.of(new BigDecimal("12")));
+        assertEquals(1200L, MinorUnits.of(new BigDecimal("12.000")));
+        assertEquals(new BigDecimal("12.30"), MinorUnits.toDecimal(1230L));
+        assertEquals(999_999_999_999_999L, MinorUnits.of(new BigDecimal("9999999999999.99")));
+        assertEquals(-1L, MinorUnits.of(new BigDecimal("-0.01")));
+        assertEquals(Long.MAX_VALUE, MinorUnits.of(new BigDecimal("92233720368547758.07")));
+
+        assertThrows(RequestValidationException.class, () -> MinorUnits.of(new BigDecimal("0.001")));
+        assertThrows(RequestValidationException.class, () -> MinorUnits.of(new BigDecimal("92233720368547758.08")));
+    }
+
+    @Test
+    public void testApply_RejectsBalanceOverflow() {
+        Wallet wallet = new Wallet();
+        wallet.setBalanceMinor(Long.MAX_VALUE);
+
+        assertThrows(RequestValidationException.class,
+                () -> WalletOperations.apply(wallet, OperationType.DEPOSIT, new BigDecimal("0.01")));
+        assertEquals(Long.MAX_VALUE, wallet.getBalanceMinor());
+
+        WalletOperations.apply(wallet, OperationType.WITHDRAW, new BigDecimal("0.99"));
+        assertEquals(new BigDecimal("92233720368547757.08"), wallet.getBalance());
+    }
+}
@@ -0,0 +1,139 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.yakov.TestRestApiApplication;
+import org.yakov.config.ReactiveWalletServer;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+import org.yakov.service.ReactiveWalletService;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(classes = TestRestApiApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"wallet.reactive.enabled=true", "wallet.reactive.port=0"})
+@ActiveProfiles("test")
+public class ReactiveWalletIntegrationTest {
+
+    @Autowired
+    private ReactiveWalletServer server;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private ReactiveWalletService reactiveWalletService;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setUp() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + server.getPort()).build();
+    }
+
+    @Test
+    public void testDepositWithdrawAndGet() {
+        UUID walletId = createWallet(new BigDecimal("100.00"));
+
+        client.post().uri("/api/v1/wallets")
+                .bodyValue(new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("50.00")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.balance").isEqualTo(150.0)
+                .jsonPath("$.version").isEqualTo(1);
+
+        client.post().uri("/api/v1/wallets")
+                .bodyValue(new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("500.00")))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorCode").isEqualTo("INSUFFICIENT_FUNDS")
+                .jsonPath("$.path").isEqualTo("/api/v1/wallets");
+
+        client.get().uri("/api/v1/wallets/{uuid}", walletId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.balance").isEqualTo(150.0);
+    }
+
+    @Test
+    public void testErrors() {
+        client.get().uri("/api/v1/wallets/{uuid}", UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.errorCode").isEqualTo("WALLET_NOT_FOUND");
+
+        client.post().uri("/api/v1/wallets")
+                .bodyValue(new WalletOperationDTO(UUID.randomUUID(), OperationType.DEPOSIT, new BigDecimal("-1.00")))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorCode").isEqualTo("VALIDATION_ERROR")
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.path").isEqualTo("/api/v1/wallets")
+                .jsonPath("$.timestamp").exists();
+
+        client.post().uri("/api/v1/wallets")
+                .header("Content-Type", "application/json")
+                .bodyValue("{\"walletId\": ")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorCode").isEqualTo("INVALID_JSON");
+    }
+
+    @Test
+    public void testTransferAndIdempotentReplay() {
+        UUID source = createWallet(new BigDecimal("100.00"));
+        UUID target = createWallet(new BigDecimal("0.00"));
+        WalletOperationDTO transfer = new WalletOperationDTO(source, OperationType.TRANSFER, new BigDecimal("30.00"), null, target);
+
+        for (int i = 0; i < 2; i++) {
+            client.post().uri("/api/v1/wallets")
+                    .header("Idempotency-Key", "reactive-transfer-" + source)
+                    .bodyValue(transfer)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.balance").isEqualTo(70.0);
+        }
+
+        assertEquals(0, new BigDecimal("70.00").compareTo(walletRepository.findById(source).get().getBalance()));
+        assertEquals(0, new BigDecimal("30.00").compareTo(walletRepository.findById(target).get().getBalance()));
+    }
+
+    private UUID createWallet(BigDecimal balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setBalance(balance);
+        return walletRepository.save(wallet).getId();
+    }
+
+    @Test
+    public void testConcurrentRequestsWithSameKeyReturnOneResult() {
+        UUID walletId = createWallet(new BigDecimal("0.00"));
+        WalletOperationDTO dto = new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("10.00"), "reactive-race-" + walletId, null);
+
+        List<Wallet> results = Flux.range(0, 8)
+                .flatMap(i -> reactiveWalletService.processOperation(dto))
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertEquals(8, results.size());
+        results.forEach(wallet -> assertEquals(0, new BigDecimal("10.00").compareTo(wallet.getBalance())));
+        assertEquals(0, new BigDecimal("10.00").compareTo(walletRepository.findById(walletId).orElseThrow().getBalance()));
+    }
+}
@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yakov.TestRestApiApplication;
+import org.yakov.model.Wallet;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Реплика в тесте — тот же сервер, пулы различаются по application_name соединения
+ */
+@SpringBootTest(classes = TestRestApiApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "wallet.replica.enabled=true",
+                "wallet.replica.url=${spring.datasource.url}",
+                "wallet.replica.hikari.data-source-properties.ApplicationName=wallet-replica",
+                "spring.datasource.hikari.data-source-properties.ApplicationName=wallet-primary"
+        })
+@ActiveProfiles("test")
+public class ReplicaRoutingTest {
+
+    private static final String APPLICATION_NAME = "select current_setting('application_name')";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final UUID TEST_WALLET_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+
+    @Test
+    public void testReadOnlyTransaction_UsesReplica() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        assertEquals("wallet-replica", readOnly.execute(status -> jdbcTemplate.queryForObject(APPLICATION_NAME, String.class)));
+        assertEquals("wallet-primary", readWrite.execute(status -> jdbcTemplate.queryForObject(APPLICATION_NAME, String.class)));
+    }
+
+    @Test
+    public void testGetWallet_MinVersionAheadOfCacheReadsPrimary() {
+        Wallet cached = restTemplate.getForObject("/api/v1/wallets/" + TEST_WALLET_ID, Wallet.class);
+
+        ResponseEntity<Wallet> response = restTemplate.getForEntity(
+                "/api/v1/wallets/" + TEST_WALLET_ID + "?minVersion=" + cached.getVersion(), Wallet.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(cached.getVersion(), response.getBody().getVersion());
+    }
+}
@@ -0,0 +1,135 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.model.BatchMode;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+import org.yakov.service.WalletLedger;
+import org.yakov.service.WalletBatchService;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WalletBatchServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletLedger walletLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WalletBatchService walletBatchService;
+
+    @BeforeEach
+    public void setUp() {
+        walletBatchService = new WalletBatchService(walletRepository, new WalletCache(new WalletProperties()), walletLedger, transactionManager, new WalletProperties());
+    }
+
+    @Test
+    public void testPerItem_FailuresDoNotAffectOtherOperations() {
+        UUID walletId = UUID.randomUUID();
+        UUID missingId = UUID.randomUUID();
+        Wallet wallet = wallet(walletId, "100.00");
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+
+        WalletBatchResponseDTO response = walletBatchService.process(List.of(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("50.00")),
+                new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("500.00")),
+                new WalletOperationDTO(missingId, OperationType.DEPOSIT, new BigDecimal("10.00")),
+                new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("150.00"))
+        ), BatchMode.PER_ITEM);
+
+        assertTrue(response.isApplied());
+        assertEquals(2, response.getSucceeded());
+        assertEquals(new BigDecimal("150.00"), response.getResults().get(0).getWallet().getBalance());
+        assertEquals("INSUFFICIENT_FUNDS", response.getResults().get(1).getErrorCode());
+        assertEquals("WALLET_NOT_FOUND", response.getResults().get(2).getErrorCode());
+        assertEquals(404, response.getResults().get(2).getStatus());
+        assertEquals(new BigDecimal("0.00"), response.getResults().get(3).getWallet().getBalance());
+        verify(walletRepository, times(1)).findAllByIdForUpdate(anyCollection());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void testPerItem_FailedTransactionIsAppliedItemByItem() {
+        UUID walletId = UUID.randomUUID();
+        UUID duplicateId = UUID.randomUUID();
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenAnswer(invocation -> {
+            Collection<UUID> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> wallet(id, "100.00")).toList();
+        });
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(walletLedger).recordAll(
+                argThat(entries -> entries.stream().anyMatch(entry -> entry.getWalletId().equals(duplicateId))));
+
+        WalletBatchResponseDTO response = walletBatchService.process(List.of(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("50.00")),
+                new WalletOperationDTO(duplicateId, OperationType.DEPOSIT, new BigDecimal("10.00"))
+        ), BatchMode.PER_ITEM);
+
+        assertTrue(response.isApplied());
+        assertEquals(1, response.getSucceeded());
+        assertEquals(new BigDecimal("150.00"), response.getResults().get(0).getWallet().getBalance());
+        assertEquals(1, response.getResults().get(1).getIndex());
+        assertEquals("INTERNAL_SERVER_ERROR", response.getResults().get(1).getErrorCode());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    public void testAllOrNothing_FailureRollsBackBatch() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet(walletId, "100.00")));
+
+        WalletBatchResponseDTO response = walletBatchService.process(List.of(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("50.00")),
+                new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("500.00"))
+        ), BatchMode.ALL_OR_NOTHING);
+
+        assertFalse(response.isApplied());
+        assertEquals(0, response.getSucceeded());
+        assertEquals("BATCH_ABORTED", response.getResults().get(0).getErrorCode());
+        assertEquals("INSUFFICIENT_FUNDS", response.getResults().get(1).getErrorCode());
+        verify(transactionManager).rollback(any());
+        verify(walletRepository, never()).flush();
+    }
+
+    @Test
+    public void testBatchTooLarge() {
+        List<WalletOperationDTO> operations = Collections.nCopies(1001,
+                new WalletOperationDTO(UUID.randomUUID(), OperationType.DEPOSIT, BigDecimal.ONE));
+
+        assertThrows(RequestValidationException.class, () -> walletBatchService.process(operations, BatchMode.PER_ITEM));
+        verifyNoInteractions(walletRepository);
+    }
+
+    private Wallet wallet(UUID id, String balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(id);
+        wallet.setBalance(new BigDecimal(balance));
+        wallet.setVersion(0L);
+        return wallet;
+    }
+}
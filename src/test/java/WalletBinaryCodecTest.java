@@ -0,0 +1,90 @@
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.yakov.codec.WalletBinaryCodec;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.MalformedRequestException;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WalletBinaryCodecTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final byte[] buffer = new byte[WalletBinaryCodec.OPERATION_MAX_LENGTH];
+
+    @Test
+    public void testOperation_RoundTrip() {
+        WalletOperationDTO dto = new WalletOperationDTO(UUID.randomUUID(), OperationType.TRANSFER,
+                new BigDecimal("1234.56"), "ключ-1", UUID.randomUUID());
+
+        int length = WalletBinaryCodec.encodeOperation(dto, buffer);
+
+        assertEquals(27 + 16 + 1 + "ключ-1".getBytes(StandardCharsets.UTF_8).length, length);
+        assertEquals(dto, WalletBinaryCodec.decodeOperation(buffer, length));
+
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setBalance(new BigDecimal("-0.01"));
+        wallet.setVersion(42L);
+        byte[] walletBuffer = new byte[WalletBinaryCodec.WALLET_LENGTH];
+        WalletBinaryCodec.encodeWallet(wallet, walletBuffer);
+        assertEquals(wallet, WalletBinaryCodec.decodeWallet(walletBuffer, walletBuffer.length));
+    }
+
+    @Test
+    public void testValidation_MatchesAnnotations() {
+        UUID walletId = UUID.randomUUID();
+        List<WalletOperationDTO> operations = List.of(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("0.01")),
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("0.00")),
+                new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("-5.00")),
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, BigDecimal.ONE, "k".repeat(64), null),
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, BigDecimal.ONE, "k".repeat(65), null),
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, BigDecimal.ONE, null, UUID.randomUUID()),
+                new WalletOperationDTO(walletId, OperationType.TRANSFER, BigDecimal.ONE, null, walletId),
+                new WalletOperationDTO(walletId, OperationType.TRANSFER, BigDecimal.ONE, null, UUID.randomUUID()));
+
+        for (WalletOperationDTO dto : operations) {
+            int length = WalletBinaryCodec.encodeOperation(dto, buffer);
+            Set<ConstraintViolation<WalletOperationDTO>> violations = validator.validate(dto);
+            if (violations.isEmpty()) {
+                assertEquals(dto.getWalletId(), WalletBinaryCodec.decodeOperation(buffer, length).getWalletId());
+            } else {
+                RequestValidationException e = assertThrows(RequestValidationException.class,
+                        () -> WalletBinaryCodec.decodeOperation(buffer, length));
+                assertEquals(violations.iterator().next().getMessage(), e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testDecode_RejectsMalformedInput() {
+        WalletOperationDTO dto = new WalletOperationDTO(UUID.randomUUID(), OperationType.DEPOSIT, BigDecimal.TEN);
+        int length = WalletBinaryCodec.encodeOperation(dto, buffer);
+
+        assertThrows(MalformedRequestException.class, () -> WalletBinaryCodec.decodeOperation(buffer, length - 1));
+        assertThrows(MalformedRequestException.class, () -> WalletBinaryCodec.decodeOperation(buffer, length + 1));
+
+        byte[] unknownType = Arrays.copyOf(buffer, length);
+        unknownType[2] = 9;
+        assertThrows(MalformedRequestException.class, () -> WalletBinaryCodec.decodeOperation(unknownType, length));
+
+        byte[] truncatedKey = Arrays.copyOf(buffer, length + 1);
+        truncatedKey[1] = 0x02;
+        truncatedKey[length] = 10;
+        assertThrows(MalformedRequestException.class, () -> WalletBinaryCodec.decodeOperation(truncatedKey, length + 1));
+    }
+}
@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+import org.yakov.cache.WalletCache;
+import org.yakov.config.WalletProperties;
+import org.yakov.model.Wallet;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WalletCacheTest {
+
+    private final WalletCache walletCache = new WalletCache(new WalletProperties());
+
+    @Test
+    public void testPut_OlderVersionDoesNotReplaceNewer() {
+        UUID walletId = UUID.randomUUID();
+        walletCache.put(wallet(walletId, "200.00", 2L));
+        walletCache.put(wallet(walletId, "100.00", 1L));
+
+        Wallet cached = walletCache.find(walletId).orElseThrow();
+
+        assertEquals(new BigDecimal("200.00"), cached.getBalance());
+        assertEquals(2L, cached.getVersion());
+    }
+
+    @Test
+    public void testFind_CountsHitsAndMisses() {
+        UUID walletId = UUID.randomUUID();
+        assertTrue(walletCache.find(walletId).isEmpty());
+        walletCache.put(wallet(walletId, "100.00", 1L));
+        walletCache.find(walletId);
+
+        assertEquals(1, walletCache.stats().getHitCount());
+        assertEquals(1, walletCache.stats().getMissCount());
+    }
+
+    @Test
+    public void testPutAfterCommit_OutsideTransactionUpdatesImmediately() {
+        UUID walletId = UUID.randomUUID();
+        walletCache.putAfterCommit(wallet(walletId, "100.00", 1L));
+
+        assertTrue(walletCache.find(walletId).isPresent());
+    }
+
+    private Wallet wallet(UUID id, String balance, long version) {
+        Wallet wallet = new Wallet();
+        wallet.setId(id);
+        wallet.setBalance(new BigDecimal(balance));
+        wallet.setVersion(version);
+        return wallet;
+    }
+}
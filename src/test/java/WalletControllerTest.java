@@ -9,6 +9,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.yakov.TestRestApiApplication;
+import org.yakov.codec.WalletBinaryCodec;
 import org.yakov.controller.WalletController;
 import org.yakov.dto.WalletOperationDTO;
 import org.yakov.exception.InsufficientFundsException;
@@ -18,12 +19,15 @@ import org.yakov.model.Wallet;
 import org.yakov.service.WalletService;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -119,4 +123,47 @@ public class WalletControllerTest {
                         .content(invalidJson))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBinaryOperation_Success() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        byte[] request = new byte[WalletBinaryCodec.OPERATION_MAX_LENGTH];
+        int length = WalletBinaryCodec.encodeOperation(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("500.00")), request);
+
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(new BigDecimal("1500.00"));
+        wallet.setVersion(1L);
+        when(walletService.processOperation(any(WalletOperationDTO.class))).thenReturn(wallet);
+
+        byte[] response = mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(WalletBinaryCodec.MEDIA_TYPE)
+                        .content(Arrays.copyOf(request, length)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WalletBinaryCodec.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(wallet, WalletBinaryCodec.decodeWallet(response, response.length));
+    }
+
+    @Test
+    public void testBinaryOperation_ErrorsAreJson() throws Exception {
+        byte[] request = new byte[WalletBinaryCodec.OPERATION_MAX_LENGTH];
+        int length = WalletBinaryCodec.encodeOperation(
+                new WalletOperationDTO(UUID.randomUUID(), OperationType.WITHDRAW, new BigDecimal("0.00")), request);
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(WalletBinaryCodec.MEDIA_TYPE)
+                        .content(Arrays.copyOf(request, length)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(WalletBinaryCodec.MEDIA_TYPE)
+                        .content(Arrays.copyOf(request, length - 1)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("INVALID_BINARY"));
+    }
+}
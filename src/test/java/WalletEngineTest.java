@@ -0,0 +1,271 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.engine.WalletEngine;
+import org.yakov.engine.WalletStore;
+import org.yakov.exception.InsufficientFundsException;
+import org.yakov.exception.WalletNotFoundException;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WalletEngineTest {
+
+    @TempDir
+    Path directory;
+
+    private final InMemoryStore store = new InMemoryStore();
+
+    @Test
+    public void testProcess_DepositAndWithdraw() {
+        UUID walletId = store.create("100.00");
+        try (WalletEngine engine = new WalletEngine(properties(4, 100_000), store)) {
+            engine.process(operation(walletId, OperationType.DEPOSIT, "50.00", null));
+            Wallet wallet = engine.process(operation(walletId, OperationType.WITHDRAW, "30.00", null));
+
+            assertEquals(new BigDecimal("120.00"), wallet.getBalance());
+            assertEquals(new BigDecimal("120.00"), engine.get(walletId).getBalance());
+            assertThrows(InsufficientFundsException.class,
+                    () -> engine.process(operation(walletId, OperationType.WITHDRAW, "500.00", null)));
+            assertThrows(WalletNotFoundException.class,
+                    () -> engine.process(operation(UUID.randomUUID(), OperationType.DEPOSIT, "1.00", null)));
+            assertThrows(WalletNotFoundException.class, () -> engine.get(UUID.randomUUID()));
+        }
+
+        assertEquals(new BigDecimal("120.00"), store.wallets.get(walletId).getBalance());
+        assertEquals(2, store.entries.size());
+    }
+
+    @Test
+    public void testProcess_ReplaysIdempotencyKey() {
+        UUID walletId = store.create("0.00");
+        try (WalletEngine engine = new WalletEngine(properties(2, 100_000), store)) {
+            engine.process(operation(walletId, OperationType.DEPOSIT, "10.00", "key-1"));
+            Wallet replay = engine.process(operation(walletId, OperationType.DEPOSIT, "10.00", "key-1"));
+
+            assertEquals(new BigDecimal("10.00"), replay.getBalance());
+            assertEquals(new BigDecimal("10.00"), engine.get(walletId).getBalance());
+        }
+    }
+
+    @Test
+    public void testProcess_ReplaysIdempotencyKeyAcrossShards() {
+        UUID walletId = store.create("0.00");
+        List<UUID> others = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            others.add(store.create("0.00"));
+        }
+        try (WalletEngine engine = new WalletEngine(properties(4, 100_000), store)) {
+            engine.process(operation(walletId, OperationType.DEPOSIT, "10.00", "shared"));
+            // Кошельки других сегментов: операция с тем же ключом возвращает результат первой
+            for (UUID other : others) {
+                Wallet replay = engine.process(operation(other, OperationType.DEPOSIT, "10.00", "shared"));
+                assertEquals(walletId, replay.getId());
+                assertEquals(new BigDecimal("10.00"), replay.getBalance());
+                assertEquals(BigDecimal.ZERO.setScale(2), engine.get(other).getBalance());
+            }
+        }
+        assertEquals(1, store.entries.size());
+    }
+
+    @Test
+    public void testSync_ContinuesAfterConstraintViolation() {
+        UUID walletId = store.create("0.00");
+        store.existingKeys.add("synced-elsewhere");
+        try (WalletEngine engine = new WalletEngine(properties(2, 100_000), store)) {
+            engine.process(operation(walletId, OperationType.DEPOSIT, "10.00", "synced-elsewhere"));
+            engine.process(operation(walletId, OperationType.DEPOSIT, "5.00", "next"));
+        }
+
+        // Запись с ключом, уже сохраненным в БД, переносится без ключа, следующие записи переносятся
+        assertEquals(new BigDecimal("15.00"), store.wallets.get(walletId).getBalance());
+        assertEquals(2, store.entries.size());
+        assertTrue(store.entries.stream().anyMatch(entry -> entry.getIdempotencyKey() == null));
+    }
+
+    @Test
+    public void testSync_ReportsOldestUnsyncedOperation() throws InterruptedException {
+        UUID walletId = store.create("0.00");
+        store.unavailable = true;
+        try (WalletEngine engine = new WalletEngine(properties(2, 100_000), store)) {
+            Instant before = Instant.now();
+            engine.process(operation(walletId, OperationType.DEPOSIT, "10.00", null));
+            Instant after = Instant.now();
+            engine.process(operation(walletId, OperationType.DEPOSIT, "5.00", null));
+
+            // Самая ранняя непереданная операция - первое пополнение
+            Instant oldest = engine.oldestUnsynced().orElseThrow();
+            assertFalse(oldest.isBefore(before));
+            assertFalse(oldest.isAfter(after));
+
+            store.unavailable = false;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (engine.oldestUnsynced().isPresent() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(engine.oldestUnsynced().isEmpty());
+        }
+        assertEquals(new BigDecimal("15.00"), store.wallets.get(walletId).getBalance());
+    }
+
+    @Test
+    public void testProcess_ConcurrentTransfersPreserveTotal() throws InterruptedException {
+        List<UUID> walletIds = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            walletIds.add(store.create("1000.00"));
+        }
+        try (WalletEngine engine = new WalletEngine(properties(4, 500), store)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int thread = 0; thread < 8; thread++) {
+                int seed = thread;
+                executor.execute(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        UUID source = walletIds.get((seed + i) % walletIds.size());
+                        UUID target = walletIds.get((seed * 7 + i * 3 + 1) % walletIds.size());
+                        if (source.equals(target)) {
+                            continue;
+                        }
+                        WalletOperationDTO dto = operation(source, OperationType.TRANSFER, "7.00", null);
+                        dto.setTargetWalletId(target);
+                        try {
+                            engine.process(dto);
+                        } catch (InsufficientFundsException ignored) {
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+            assertEquals(new BigDecimal("16000.00"), total(walletIds.stream().map(engine::get).toList()));
+        }
+
+        assertEquals(new BigDecimal("16000.00"), total(walletIds.stream().map(store.wallets::get).toList()));
+    }
+
+    @Test
+    public void testRecovery_RestoresStateFromSnapshotAndLog() {
+        UUID first = store.create("0.00");
+        UUID second = store.create("0.00");
+        try (WalletEngine engine = new WalletEngine(properties(2, 10), store)) {
+            for (int i = 0; i < 25; i++) {
+                engine.process(operation(first, OperationType.DEPOSIT, "1.00", "deposit-" + i));
+            }
+            WalletOperationDTO transfer = operation(first, OperationType.TRANSFER, "5.00", null);
+            transfer.setTargetWalletId(second);
+            engine.process(transfer);
+        }
+
+        // Хранилище без переноса: состояние восстанавливается только из каталога движка
+        InMemoryStore empty = new InMemoryStore();
+        empty.wallets.putAll(Map.of(first, wallet(first, "0.00"), second, wallet(second, "0.00")));
+        try (WalletEngine engine = new WalletEngine(properties(2, 10), empty)) {
+            assertEquals(new BigDecimal("20.00"), engine.get(first).getBalance());
+            assertEquals(new BigDecimal("5.00"), engine.get(second).getBalance());
+            Wallet replay = engine.process(operation(first, OperationType.DEPOSIT, "1.00", "deposit-24"));
+            assertEquals(25L, replay.getVersion());
+            assertEquals(new BigDecimal("20.00"), engine.get(first).getBalance());
+        }
+    }
+
+    @Test
+    public void testStart_RejectsChangedShardCount() {
+        new WalletEngine(properties(2, 100_000), store).close();
+
+        assertThrows(IllegalStateException.class, () -> new WalletEngine(properties(3, 100_000), store));
+    }
+
+    private WalletProperties.Engine properties(int shards, int snapshotEvery) {
+        WalletProperties.Engine properties = new WalletProperties.Engine();
+        properties.setShards(shards);
+        properties.setDirectory(directory.toString());
+        properties.setFsync(false);
+        properties.setSnapshotEvery(snapshotEvery);
+        return properties;
+    }
+
+    private static WalletOperationDTO operation(UUID walletId, OperationType type, String amount, String key) {
+        return new WalletOperationDTO(walletId, type, new BigDecimal(amount), key, null);
+    }
+
+    private static BigDecimal total(List<Wallet> wallets) {
+        return wallets.stream().map(Wallet::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static Wallet wallet(UUID id, String balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(id);
+        wallet.setBalance(new BigDecimal(balance));
+        wallet.setVersion(0L);
+        return wallet;
+    }
+
+    /**
+     * Хранилище, применяющее перенесенные записи так же, как PostgreSQL: обновление только с большей версией
+     */
+    private static class InMemoryStore implements WalletStore {
+
+        private final Map<UUID, Wallet> wallets = new ConcurrentHashMap<>();
+        private final List<WalletOperation> entries = new ArrayList<>();
+        private final Map<Integer, Long> syncedLsns = new ConcurrentHashMap<>();
+        private final Set<String> existingKeys = new HashSet<>();
+        private volatile boolean unavailable;
+
+        UUID create(String balance) {
+            UUID id = UUID.randomUUID();
+            wallets.put(id, wallet(id, balance));
+            return id;
+        }
+
+        @Override
+        public Optional<Wallet> load(UUID walletId) {
+            return Optional.ofNullable(wallets.get(walletId)).map(wallet -> wallet(wallet.getId(), wallet.getBalance().toPlainString()));
+        }
+
+        @Override
+        public long syncedLsn(int shard) {
+            return syncedLsns.getOrDefault(shard, 0L);
+        }
+
+        @Override
+        public synchronized void write(List<WalletOperation> entries, Collection<Wallet> wallets, Map<Integer, Long> syncedLsns) {
+            if (unavailable) {
+                throw new TransientDataAccessResourceException("connection refused");
+            }
+            for (WalletOperation entry : entries) {
+                if (entry.getIdempotencyKey() != null && existingKeys.contains(entry.getIdempotencyKey())) {
+                    throw new DuplicateKeyException("uq_wallet_operations_idempotency_key");
+                }
+            }
+            this.entries.addAll(entries);
+            for (Wallet wallet : wallets) {
+                this.wallets.merge(wallet.getId(), wallet, (current, updated) -> current.getVersion() < updated.getVersion() ? updated : current);
+            }
+            this.syncedLsns.putAll(syncedLsns);
+        }
+    }
+}
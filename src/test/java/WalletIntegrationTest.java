@@ -1,5 +1,7 @@
+import com.fasterxml.jackson.databind.JsonNode;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
@@ -9,18 +11,39 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.yakov.TestRestApiApplication;
+import org.yakov.dto.QueuedOperationDTO;
+import org.yakov.dto.WalletBalanceDTO;
+import org.yakov.dto.WalletBatchRequestDTO;
+import org.yakov.dto.WalletBatchResponseDTO;
 import org.yakov.dto.WalletOperationDTO;
+import org.yakov.dto.WalletQueryRequestDTO;
+import org.yakov.dto.WalletQueryResponseDTO;
+import org.yakov.model.BatchMode;
 import org.yakov.model.OperationType;
+import org.yakov.model.QueuedOperationStatus;
 import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+import org.yakov.service.WalletSnapshotService;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@SpringBootTest(classes = TestRestApiApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(classes = TestRestApiApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "wallet.limiter.enabled=true")
 @ActiveProfiles("test")
+@AutoConfigureObservability(tracing = false)
 public class WalletIntegrationTest {
 
     @LocalServerPort
@@ -29,6 +52,12 @@ public class WalletIntegrationTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletSnapshotService walletSnapshotService;
+
     private final UUID TEST_WALLET_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
 
     @Test
@@ -79,4 +108,212 @@ public class WalletIntegrationTest {
         assertEquals(HttpStatus.OK, withdrawResponse.getStatusCode());
         assertEquals(initialBalance.add(new BigDecimal("300.00")), withdrawResponse.getBody().getBalance());
     }
+
+    @Test
+    public void testBatchOperations() {
+        BigDecimal initialBalance = restTemplate.getForEntity(
+                "/api/v1/wallets/" + TEST_WALLET_ID, Wallet.class).getBody().getBalance();
+
+        WalletBatchRequestDTO batchDto = new WalletBatchRequestDTO(BatchMode.PER_ITEM, List.of(
+                new WalletOperationDTO(TEST_WALLET_ID, OperationType.DEPOSIT, new BigDecimal("100.00")),
+                new WalletOperationDTO(UUID.randomUUID(), OperationType.DEPOSIT, new BigDecimal("100.00")),
+                new WalletOperationDTO(TEST_WALLET_ID, OperationType.WITHDRAW, new BigDecimal("40.00"))
+        ));
+
+        ResponseEntity<WalletBatchResponseDTO> response = restTemplate.postForEntity(
+                "/api/v1/wallets/batch", batchDto, WalletBatchResponseDTO.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().isApplied());
+        assertEquals(2, response.getBody().getSucceeded());
+        assertEquals("WALLET_NOT_FOUND", response.getBody().getResults().get(1).getErrorCode());
+        assertEquals(initialBalance.add(new BigDecimal("60.00")),
+                response.getBody().getResults().get(2).getWallet().getBalance());
+    }
+
+    @Test
+    public void testQueryWallets_ReturnsFoundAndMissing() {
+        UUID secondWalletId = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+        UUID missingId = UUID.randomUUID();
+
+        ResponseEntity<WalletQueryResponseDTO> response = restTemplate.postForEntity("/api/v1/wallets/query",
+                new WalletQueryRequestDTO(List.of(TEST_WALLET_ID, missingId, secondWalletId, TEST_WALLET_ID)),
+                WalletQueryResponseDTO.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(TEST_WALLET_ID, secondWalletId),
+                response.getBody().getWallets().stream().map(Wallet::getId).toList());
+        assertEquals(List.of(missingId), response.getBody().getMissingIds());
+    }
+
+    @Test
+    public void testOperationsHistory_KeysetPagination() {
+        UUID walletId = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+        for (String amount : new String[]{"1.00", "2.00", "3.00"}) {
+            restTemplate.postForEntity("/api/v1/wallets",
+                    new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal(amount)), Wallet.class);
+        }
+
+        ResponseEntity<JsonNode> firstPage = restTemplate.getForEntity(
+                "/api/v1/wallets/" + walletId + "/operations?limit=2", JsonNode.class);
+
+        assertEquals(HttpStatus.OK, firstPage.getStatusCode());
+        assertEquals(2, firstPage.getBody().get("operations").size());
+        assertEquals(3.00, firstPage.getBody().get("operations").get(0).get("amount").asDouble());
+        assertEquals(2.00, firstPage.getBody().get("operations").get(1).get("amount").asDouble());
+
+        ResponseEntity<JsonNode> secondPage = restTemplate.getForEntity(
+                "/api/v1/wallets/" + walletId + "/operations?limit=2&cursor=" + firstPage.getBody().get("nextCursor").asText(),
+                JsonNode.class);
+
+        assertEquals(1.00, secondPage.getBody().get("operations").get(0).get("amount").asDouble());
+
+        ResponseEntity<JsonNode> missing = restTemplate.getForEntity(
+                "/api/v1/wallets/" + UUID.randomUUID() + "/operations", JsonNode.class);
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+    }
+
+    @Test
+    public void testPrometheusMetrics() {
+        restTemplate.postForEntity("/api/v1/wallets",
+                new WalletOperationDTO(TEST_WALLET_ID, OperationType.DEPOSIT, new BigDecimal("1.00")), Wallet.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("wallet_operation_seconds_count{application=\"test_rest_api\",outcome=\"success\",type=\"DEPOSIT\"}"));
+        assertTrue(response.getBody().contains("wallet_operation_execution_seconds_bucket"));
+        assertTrue(response.getBody().contains("hikaricp_connections_pending"));
+        assertTrue(response.getBody().contains("wallet_limiter_available"));
+    }
+
+    @Test
+    public void testConcurrentOppositeTransfers() throws Exception {
+        UUID first = createWallet(new BigDecimal("1000.00"));
+        UUID second = createWallet(new BigDecimal("1000.00"));
+        int threadsPerDirection = 8;
+        int transfersPerThread = 25;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadsPerDirection * 2);
+        List<Future<HttpStatus>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threadsPerDirection; t++) {
+                results.add(executor.submit(transfers(first, second, transfersPerThread)));
+                results.add(executor.submit(transfers(second, first, transfersPerThread)));
+            }
+            for (Future<HttpStatus> result : results) {
+                assertEquals(HttpStatus.OK, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Встречные переводы одинаковых сумм взаимно компенсируются
+        assertEquals(0, new BigDecimal("1000.00").compareTo(walletRepository.findById(first).get().getBalance()));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(walletRepository.findById(second).get().getBalance()));
+    }
+
+    @Test
+    public void testAsyncOperation_AcceptedAndCompletedLater() throws Exception {
+        UUID walletId = createWallet(BigDecimal.ZERO);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Prefer", "respond-async");
+        headers.set("Idempotency-Key", UUID.randomUUID().toString());
+        HttpEntity<WalletOperationDTO> request = new HttpEntity<>(
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal("100.00")), headers);
+
+        ResponseEntity<QueuedOperationDTO> accepted = restTemplate.postForEntity("/api/v1/wallets", request, QueuedOperationDTO.class);
+        assertEquals(HttpStatus.ACCEPTED, accepted.getStatusCode());
+        UUID operationId = accepted.getBody().getOperationId();
+        assertEquals("/api/v1/wallets/operations/" + operationId, accepted.getHeaders().getLocation().toString());
+
+        ResponseEntity<QueuedOperationDTO> repeated = restTemplate.postForEntity("/api/v1/wallets", request, QueuedOperationDTO.class);
+        assertEquals(operationId, repeated.getBody().getOperationId());
+
+        QueuedOperationDTO operation = accepted.getBody();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!operation.getStatus().isCompleted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            operation = restTemplate.getForObject("/api/v1/wallets/operations/" + operationId, QueuedOperationDTO.class);
+        }
+        assertEquals(QueuedOperationStatus.SUCCEEDED, operation.getStatus());
+        assertEquals(0, new BigDecimal("100.00").compareTo(operation.getWallet().getBalance()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(walletRepository.findById(walletId).get().getBalance()));
+
+        ResponseEntity<JsonNode> missing = restTemplate.getForEntity("/api/v1/wallets/operations/" + UUID.randomUUID(), JsonNode.class);
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        assertEquals("OPERATION_NOT_FOUND", missing.getBody().get("errorCode").asText());
+    }
+
+    @Test
+    public void testBalanceAt_FromSnapshotAndOperations() throws Exception {
+        UUID walletId = createWallet(new BigDecimal("100.00"));
+        Instant created = Instant.now();
+        deposit(walletId, "10.00");
+        Instant beforeCheckpoint = pause();
+        deposit(walletId, "20.00");
+        Instant checkpoint = pause();
+        walletSnapshotService.checkpoint(checkpoint);
+        deposit(walletId, "5.00");
+        Instant afterCheckpoint = pause();
+
+        // До снимка баланс рассчитывается от текущего
+        WalletBalanceDTO before = restTemplate.getForObject(
+                "/api/v1/wallets/" + walletId + "/balance?at=" + beforeCheckpoint, WalletBalanceDTO.class);
+        assertEquals(0, new BigDecimal("110.00").compareTo(before.getBalance()));
+        assertNull(before.getSnapshotAt());
+        WalletBalanceDTO initial = restTemplate.getForObject(
+                "/api/v1/wallets/" + walletId + "/balance?at=" + created, WalletBalanceDTO.class);
+        assertEquals(0, new BigDecimal("100.00").compareTo(initial.getBalance()));
+
+        WalletBalanceDTO atCheckpoint = restTemplate.getForObject(
+                "/api/v1/wallets/" + walletId + "/balance?at=" + checkpoint, WalletBalanceDTO.class);
+        assertEquals(0, new BigDecimal("130.00").compareTo(atCheckpoint.getBalance()));
+        assertNotNull(atCheckpoint.getSnapshotAt());
+
+        WalletBalanceDTO after = restTemplate.getForObject(
+                "/api/v1/wallets/" + walletId + "/balance?at=" + afterCheckpoint, WalletBalanceDTO.class);
+        assertEquals(0, new BigDecimal("135.00").compareTo(after.getBalance()));
+        assertNotNull(after.getSnapshotAt());
+
+        ResponseEntity<JsonNode> missing = restTemplate.getForEntity(
+                "/api/v1/wallets/" + UUID.randomUUID() + "/balance?at=" + afterCheckpoint, JsonNode.class);
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+    }
+
+    private void deposit(UUID walletId, String amount) {
+        ResponseEntity<Wallet> response = restTemplate.postForEntity("/api/v1/wallets",
+                new WalletOperationDTO(walletId, OperationType.DEPOSIT, new BigDecimal(amount)), Wallet.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    /**
+     * Момент между операциями: время операций в БД хранится с точностью до микросекунды
+     */
+    private static Instant pause() throws InterruptedException {
+        Thread.sleep(5);
+        Instant now = Instant.now();
+        Thread.sleep(5);
+        return now;
+    }
+
+    private Callable<HttpStatus> transfers(UUID source, UUID target, int count) {
+        return () -> {
+            for (int i = 0; i < count; i++) {
+                ResponseEntity<Wallet> response = restTemplate.postForEntity("/api/v1/wallets",
+                        new WalletOperationDTO(source, OperationType.TRANSFER, new BigDecimal("1.00"), null, target), Wallet.class);
+                if (response.getStatusCode() != HttpStatus.OK) {
+                    return HttpStatus.valueOf(response.getStatusCode().value());
+                }
+            }
+            return HttpStatus.OK;
+        };
+    }
+
+    private UUID createWallet(BigDecimal balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setBalance(balance);
+        return walletRepository.save(wallet).getId();
+    }
 }
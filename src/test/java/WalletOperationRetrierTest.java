@@ -0,0 +1,147 @@
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.RetryStatsDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.ConcurrentModificationException;
+import org.yakov.exception.InsufficientFundsException;
+import org.yakov.metrics.HotWalletTracker;
+import org.yakov.metrics.WalletMetrics;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletConcurrencyLimiter;
+import org.yakov.service.WalletOperationRetrier;
+import org.yakov.service.WalletService;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WalletOperationRetrierTest {
+
+    @Mock
+    private WalletService walletService;
+
+    private WalletOperationRetrier retrier;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final UUID walletId = UUID.randomUUID();
+    private final WalletOperationDTO dto = new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("10.00"));
+
+    @BeforeEach
+    public void setUp() {
+        WalletProperties properties = new WalletProperties();
+        properties.getRetry().setMaxAttempts(3);
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        properties.getRetry().setMaxBackoff(Duration.ofMillis(2));
+        retrier = new WalletOperationRetrier(walletService, limiter(properties), new WalletMetrics(registry, properties),
+                new HotWalletTracker(properties), properties);
+    }
+
+    @Test
+    public void testRetry_SucceedsAfterConflicts() {
+        Wallet wallet = new Wallet();
+        when(walletService.processOperation(dto))
+                .thenThrow(new ConcurrentModificationException("conflict"))
+                .thenThrow(new ConcurrentModificationException("conflict"))
+                .thenReturn(wallet);
+
+        assertSame(wallet, retrier.processOperation(dto));
+
+        RetryStatsDTO stats = retrier.stats();
+        assertEquals(1, stats.getOperations());
+        assertEquals(1, stats.getRetriedOperations());
+        assertEquals(0, stats.getGaveUp());
+        assertEquals(List.of(0L, 0L, 1L), stats.getAttemptsDistribution());
+        assertEquals(2L, stats.getContendedWallets().get(walletId));
+        assertEquals(2.0, registry.get("wallet.operation.conflicts").tag("type", "WITHDRAW").counter().count());
+        assertEquals(3, registry.get("wallet.operation.execution").tag("type", "WITHDRAW").timers().stream()
+                .mapToLong(timer -> timer.count()).sum());
+        assertEquals(1, registry.get("wallet.operation").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    public void testRetry_GivesUpAfterMaxAttempts() {
+        when(walletService.processOperation(dto)).thenThrow(new ConcurrentModificationException("conflict"));
+
+        assertThrows(ConcurrentModificationException.class, () -> retrier.processOperation(dto));
+
+        verify(walletService, times(3)).processOperation(dto);
+        assertEquals(1, retrier.stats().getGaveUp());
+        assertEquals(3.0, retrier.stats().getAttemptsPerOperation());
+    }
+
+    @Test
+    public void testRetry_GivesUpWhenTimeBudgetExhausted() {
+        WalletProperties properties = new WalletProperties();
+        properties.getRetry().setInitialBackoff(Duration.ofSeconds(1));
+        properties.getRetry().setMaxBackoff(Duration.ofSeconds(1));
+        properties.getRetry().setTimeBudget(Duration.ZERO);
+        retrier = new WalletOperationRetrier(walletService, limiter(properties), new WalletMetrics(registry, properties),
+                new HotWalletTracker(properties), properties);
+        when(walletService.processOperation(dto)).thenThrow(new ConcurrentModificationException("conflict"));
+
+        assertThrows(ConcurrentModificationException.class, () -> retrier.processOperation(dto));
+
+        verify(walletService, times(1)).processOperation(dto);
+    }
+
+    @Test
+    public void testRetry_DoesNotRetryBusinessErrors() {
+        when(walletService.processOperation(dto)).thenThrow(new InsufficientFundsException("no funds"));
+
+        assertThrows(InsufficientFundsException.class, () -> retrier.processOperation(dto));
+
+        verify(walletService, times(1)).processOperation(dto);
+        assertEquals(0, retrier.stats().getGaveUp());
+        assertEquals(1, registry.get("wallet.operation").tag("outcome", "INSUFFICIENT_FUNDS").timer().count());
+    }
+
+    @Test
+    public void testQueueingMode_CallersWaitWithoutLimiterPermits() throws Exception {
+        WalletProperties properties = new WalletProperties();
+        properties.getExecution().setMode("group");
+        retrier = new WalletOperationRetrier(walletService, limiter(properties), new WalletMetrics(registry, properties),
+                new HotWalletTracker(properties), properties);
+        CountDownLatch waiting = new CountDownLatch(2);
+        when(walletService.processOperation(dto)).thenAnswer(invocation -> {
+            waiting.countDown();
+            return waiting.await(5, TimeUnit.SECONDS) ? new Wallet() : null;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Wallet> first = pool.submit(() -> retrier.processOperation(dto));
+            Future<Wallet> second = pool.submit(() -> retrier.processOperation(dto));
+
+            assertNotNull(first.get(10, TimeUnit.SECONDS));
+            assertNotNull(second.get(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static WalletConcurrencyLimiter limiter(WalletProperties properties) {
+        properties.getLimiter().setEnabled(true);
+        properties.getLimiter().setMaxConcurrent(1);
+        return new WalletConcurrencyLimiter(properties, null);
+    }
+}
@@ -4,13 +4,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.yakov.cache.WalletCache;
 import org.yakov.dto.WalletOperationDTO;
 import org.yakov.exception.ConcurrentModificationException;
 import org.yakov.exception.InsufficientFundsException;
 import org.yakov.exception.WalletNotFoundException;
 import org.yakov.model.OperationType;
 import org.yakov.model.Wallet;
+import org.yakov.model.WalletOperation;
 import org.yakov.repository.WalletRepository;
+import org.yakov.service.WalletLedger;
 import org.yakov.service.WalletServiceImpl;
 
 import java.math.BigDecimal;
@@ -28,6 +31,12 @@ public class WalletServiceTest {
     @Mock
     private WalletRepository walletRepository;
 
+    @Mock
+    private WalletCache walletCache;
+
+    @Mock
+    private WalletLedger walletLedger;
+
     @InjectMocks
     private WalletServiceImpl walletService;
 
@@ -58,6 +67,8 @@ public class WalletServiceTest {
         assertEquals(1L, result.getVersion());
         verify(walletRepository).findById(walletId);
         verify(walletRepository).save(any(Wallet.class));
+        verify(walletLedger).record(any(WalletOperation.class));
+        verify(walletCache).putAfterCommit(updatedWallet);
     }
 
     @Test
@@ -106,6 +117,7 @@ public class WalletServiceTest {
         assertThrows(InsufficientFundsException.class, () -> walletService.processOperation(dto));
         verify(walletRepository).findById(walletId);
         verify(walletRepository, never()).save(any(Wallet.class));
+        verify(walletCache, never()).putAfterCommit(any(Wallet.class));
     }
 
     @Test
@@ -144,6 +156,26 @@ public class WalletServiceTest {
         verify(walletRepository).save(any(Wallet.class));
     }
 
+    @Test
+    public void testProcessOperation_IdempotentReplay() {
+        UUID walletId = UUID.randomUUID();
+        WalletOperationDTO dto = new WalletOperationDTO(walletId, OperationType.WITHDRAW, new BigDecimal("500.00"), "payout-42", null);
+
+        Wallet original = new Wallet();
+        original.setId(walletId);
+        original.setBalance(new BigDecimal("500.00"));
+        original.setVersion(1L);
+
+        when(walletLedger.findResult("payout-42")).thenReturn(Optional.of(original));
+
+        Wallet result = walletService.processOperation(dto);
+
+        assertEquals(new BigDecimal("500.00"), result.getBalance());
+        verify(walletRepository, never()).findById(walletId);
+        verify(walletRepository, never()).save(any(Wallet.class));
+        verify(walletLedger, never()).record(any(WalletOperation.class));
+    }
+
     @Test
     public void testGet_Success() {
         UUID walletId = UUID.randomUUID();
@@ -159,6 +191,23 @@ public class WalletServiceTest {
         assertEquals(walletId, result.getId());
         assertEquals(new BigDecimal("1000.00"), result.getBalance());
         verify(walletRepository).findById(walletId);
+        verify(walletCache).put(wallet);
+    }
+
+    @Test
+    public void testGet_FromCache() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(new BigDecimal("1000.00"));
+        wallet.setVersion(3L);
+
+        when(walletCache.find(walletId)).thenReturn(Optional.of(wallet));
+
+        Wallet result = walletService.get(walletId);
+
+        assertEquals(3L, result.getVersion());
+        verify(walletRepository, never()).findById(walletId);
     }
 
     @Test
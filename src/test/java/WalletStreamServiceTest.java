@@ -0,0 +1,98 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.yakov.config.WalletProperties;
+import org.yakov.dto.WalletBatchResponseDTO;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.dto.WalletOperationResultDTO;
+import org.yakov.model.BatchMode;
+import org.yakov.model.Wallet;
+import org.yakov.service.WalletBatchService;
+import org.yakov.service.WalletStreamService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WalletStreamServiceTest {
+
+    @Mock
+    private WalletBatchService walletBatchService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private WalletStreamService walletStreamService;
+
+    @BeforeEach
+    public void setUp() {
+        WalletProperties properties = new WalletProperties();
+        properties.getStream().setChunkSize(2);
+        walletStreamService = new WalletStreamService(walletBatchService,
+                Validation.buildDefaultValidatorFactory().getValidator(), objectMapper, properties);
+
+        lenient().when(walletBatchService.process(anyList(), eq(BatchMode.PER_ITEM))).thenAnswer(invocation -> {
+            List<WalletOperationDTO> operations = invocation.getArgument(0);
+            List<WalletOperationResultDTO> results = new ArrayList<>();
+            for (int i = 0; i < operations.size(); i++) {
+                Wallet wallet = new Wallet();
+                wallet.setId(operations.get(i).getWalletId());
+                wallet.setBalance(operations.get(i).getAmount());
+                wallet.setVersion(1L);
+                results.add(WalletOperationResultDTO.success(i, wallet));
+            }
+            return new WalletBatchResponseDTO(BatchMode.PER_ITEM, true, results.size(), 0, results);
+        });
+    }
+
+    @Test
+    public void testProcess_ResultsFollowInputOrderAcrossChunks() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        String input = String.join("\n",
+                "{\"walletId\":\"" + walletId + "\",\"operationType\":\"DEPOSIT\",\"amount\":1}",
+                "not json",
+                "",
+                "{\"walletId\":\"" + walletId + "\",\"operationType\":\"DEPOSIT\",\"amount\":0}",
+                "{\"walletId\":\"" + walletId + "\",\"operationType\":\"DEPOSIT\",\"amount\":2}",
+                "{\"walletId\":\"" + walletId + "\",\"operationType\":\"WITHDRAW\",\"amount\":3}");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        walletStreamService.process(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(i, objectMapper.readTree(lines[i]).get("index").asInt());
+        }
+        assertEquals(0, new BigDecimal("1").compareTo(objectMapper.readTree(lines[0]).get("wallet").get("balance").decimalValue()));
+        assertEquals("INVALID_JSON", objectMapper.readTree(lines[1]).get("errorCode").asText());
+        assertEquals("VALIDATION_ERROR", objectMapper.readTree(lines[2]).get("errorCode").asText());
+        JsonNode last = objectMapper.readTree(lines[4]);
+        assertEquals(0, new BigDecimal("3").compareTo(last.get("wallet").get("balance").decimalValue()));
+        verify(walletBatchService, times(3)).process(anyList(), eq(BatchMode.PER_ITEM));
+    }
+
+    @Test
+    public void testConstructor_RejectsChunkLargerThanBatch() {
+        WalletProperties properties = new WalletProperties();
+        properties.getStream().setChunkSize(properties.getBatch().getMaxSize() + 1);
+
+        assertThrows(IllegalStateException.class, () -> new WalletStreamService(walletBatchService,
+                Validation.buildDefaultValidatorFactory().getValidator(), objectMapper, properties));
+    }
+}
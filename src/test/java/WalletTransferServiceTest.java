@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.yakov.cache.WalletCache;
+import org.yakov.dto.WalletOperationDTO;
+import org.yakov.exception.InsufficientFundsException;
+import org.yakov.exception.RequestValidationException;
+import org.yakov.exception.WalletNotFoundException;
+import org.yakov.model.OperationType;
+import org.yakov.model.Wallet;
+import org.yakov.repository.WalletRepository;
+import org.yakov.service.WalletLedger;
+import org.yakov.service.WalletTransferService;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WalletTransferServiceTest {
+
+    private static final UUID LOWER_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID HIGHER_ID = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletCache walletCache;
+
+    @Mock
+    private WalletLedger walletLedger;
+
+    @InjectMocks
+    private WalletTransferService walletTransferService;
+
+    @Test
+    public void testTransfer_Success() {
+        Wallet source = wallet(HIGHER_ID, "100.00");
+        Wallet target = wallet(LOWER_ID, "10.00");
+        when(walletRepository.findByIdForUpdate(HIGHER_ID)).thenReturn(Optional.of(source));
+        when(walletRepository.findByIdForUpdate(LOWER_ID)).thenReturn(Optional.of(target));
+
+        Wallet result = walletTransferService.transfer(transfer(HIGHER_ID, LOWER_ID, "30.00"));
+
+        assertEquals(HIGHER_ID, result.getId());
+        assertEquals(new BigDecimal("70.00"), source.getBalance());
+        assertEquals(new BigDecimal("40.00"), target.getBalance());
+        verify(walletLedger).recordAll(anyList());
+        verify(walletCache).putAfterCommit(source);
+        verify(walletCache).putAfterCommit(target);
+    }
+
+    @Test
+    public void testTransfer_LocksInSameOrderForBothDirections() {
+        when(walletRepository.findByIdForUpdate(LOWER_ID)).thenReturn(Optional.of(wallet(LOWER_ID, "100.00")));
+        when(walletRepository.findByIdForUpdate(HIGHER_ID)).thenReturn(Optional.of(wallet(HIGHER_ID, "100.00")));
+
+        walletTransferService.transfer(transfer(LOWER_ID, HIGHER_ID, "10.00"));
+        walletTransferService.transfer(transfer(HIGHER_ID, LOWER_ID, "10.00"));
+
+        InOrder inOrder = inOrder(walletRepository);
+        inOrder.verify(walletRepository).findByIdForUpdate(LOWER_ID);
+        inOrder.verify(walletRepository).findByIdForUpdate(HIGHER_ID);
+        inOrder.verify(walletRepository).findByIdForUpdate(LOWER_ID);
+        inOrder.verify(walletRepository).findByIdForUpdate(HIGHER_ID);
+    }
+
+    @Test
+    public void testTransfer_InsufficientFunds() {
+        when(walletRepository.findByIdForUpdate(LOWER_ID)).thenReturn(Optional.of(wallet(LOWER_ID, "10.00")));
+        when(walletRepository.findByIdForUpdate(HIGHER_ID)).thenReturn(Optional.of(wallet(HIGHER_ID, "0.00")));
+
+        assertThrows(InsufficientFundsException.class,
+                () -> walletTransferService.transfer(transfer(LOWER_ID, HIGHER_ID, "50.00")));
+
+        verify(walletLedger, never()).recordAll(anyList());
+        verify(walletCache, never()).putAfterCommit(any());
+    }
+
+    @Test
+    public void testTransfer_TargetOverflowLeavesSourceUnchanged() {
+        Wallet source = wallet(LOWER_ID, "100.00");
+        Wallet target = wallet(HIGHER_ID, "0.00");
+        target.setBalanceMinor(Long.MAX_VALUE - 100);
+        when(walletRepository.findByIdForUpdate(LOWER_ID)).thenReturn(Optional.of(source));
+        when(walletRepository.findByIdForUpdate(HIGHER_ID)).thenReturn(Optional.of(target));
+
+        assertThrows(RequestValidationException.class,
+                () -> walletTransferService.transfer(transfer(LOWER_ID, HIGHER_ID, "50.00")));
+
+        assertEquals(new BigDecimal("100.00"), source.getBalance());
+        assertEquals(Long.MAX_VALUE - 100, target.getBalanceMinor());
+        verify(walletLedger, never()).recordAll(anyList());
+    }
+
+    @Test
+    public void testTransfer_TargetNotFound() {
+        when(walletRepository.findByIdForUpdate(LOWER_ID)).thenReturn(Optional.of(wallet(LOWER_ID, "100.00")));
+        when(walletRepository.findByIdForUpdate(HIGHER_ID)).thenReturn(Optional.empty());
+
+        assertThrows(WalletNotFoundException.class,
+                () -> walletTransferService.transfer(transfer(LOWER_ID, HIGHER_ID, "10.00")));
+    }
+
+    @Test
+    public void testTransfer_SameWallet() {
+        assertThrows(IllegalArgumentException.class,
+                () -> walletTransferService.transfer(transfer(LOWER_ID, LOWER_ID, "10.00")));
+
+        verifyNoInteractions(walletRepository);
+    }
+
+    private static WalletOperationDTO transfer(UUID source, UUID target, String amount) {
+        return new WalletOperationDTO(source, OperationType.TRANSFER, new BigDecimal(amount), null, target);
+    }
+
+    private static Wallet wallet(UUID id, String balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(id);
+        wallet.setBalance(new BigDecimal(balance));
+        wallet.setVersion(0L);
+        return wallet;
+    }
+}